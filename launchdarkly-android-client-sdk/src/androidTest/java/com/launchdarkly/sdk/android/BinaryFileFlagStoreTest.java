@@ -0,0 +1,127 @@
+package com.launchdarkly.sdk.android;
+
+import android.app.Application;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.launchdarkly.sdk.EvaluationReason;
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class BinaryFileFlagStoreTest extends FlagStoreTest {
+
+    private Application testApplication;
+
+    @Rule
+    public TimberLoggingRule timberLoggingRule = new TimberLoggingRule();
+
+    @Before
+    public void setUp() {
+        this.testApplication = ApplicationProvider.getApplicationContext();
+        new BinaryFileFlagStore(testApplication, "abc").delete();
+    }
+
+    public FlagStore createFlagStore(String identifier) {
+        return new BinaryFileFlagStore(testApplication, identifier);
+    }
+
+    @Test
+    public void roundTripsAllFields() {
+        final Flag full = new FlagBuilder("full")
+                .value(LDValue.buildObject().put("a", LDValue.of(1)).build())
+                .version(12)
+                .flagVersion(13)
+                .variation(2)
+                .trackEvents(true)
+                .trackReason(false)
+                .debugEventsUntilDate(123456789L)
+                .reason(EvaluationReason.ruleMatch(1, "rule-id"))
+                .build();
+        final Flag empty = new FlagBuilder("empty").build();
+
+        final BinaryFileFlagStore flagStore = new BinaryFileFlagStore(testApplication, "abc");
+        flagStore.applyFlagUpdates(Arrays.<FlagUpdate>asList(full, empty));
+
+        final BinaryFileFlagStore reloaded = new BinaryFileFlagStore(testApplication, "abc");
+        final Flag loadedFull = reloaded.getFlag("full");
+        assertEquals(full.getValue(), loadedFull.getValue());
+        assertEquals(12, loadedFull.getVersion(), 0);
+        assertEquals(13, loadedFull.getFlagVersion(), 0);
+        assertEquals(2, loadedFull.getVariation(), 0);
+        assertTrue(loadedFull.getTrackEvents());
+        assertFalse(loadedFull.isTrackReason());
+        assertEquals(123456789L, loadedFull.getDebugEventsUntilDate(), 0);
+        assertEquals(full.getReason(), loadedFull.getReason());
+
+        final Flag loadedEmpty = reloaded.getFlag("empty");
+        assertEquals(LDValue.ofNull(), loadedEmpty.getValue());
+        assertNull(loadedEmpty.getVersion());
+        assertNull(loadedEmpty.getFlagVersion());
+        assertNull(loadedEmpty.getVariation());
+        assertNull(loadedEmpty.getDebugEventsUntilDate());
+        assertNull(loadedEmpty.getReason());
+    }
+
+    @Test
+    public void migratesFlagsFromSharedPreferences() {
+        final Flag key1 = new FlagBuilder("key1").value(LDValue.of(true)).version(12).build();
+        final SharedPrefsFlagStore legacyStore = new SharedPrefsFlagStore(testApplication, "abc");
+        legacyStore.applyFlagUpdate(key1);
+
+        final BinaryFileFlagStore flagStore = new BinaryFileFlagStore(testApplication, "abc");
+        assertEquals(LDValue.of(true), flagStore.getFlag("key1").getValue());
+        assertEquals(12, flagStore.getFlag("key1").getVersion(), 0);
+        assertTrue(BinaryFileFlagStore.fileForIdentifier(testApplication, "abc").exists());
+        assertFalse(SharedPrefsFlagStore.prefsFileForIdentifier(testApplication, "abc").exists());
+
+        // Migrated flags are read back from the binary file
+        final BinaryFileFlagStore reloaded = new BinaryFileFlagStore(testApplication, "abc");
+        assertEquals(12, reloaded.getFlag("key1").getVersion(), 0);
+    }
+
+    @Test
+    public void flushWritesOnlyTheFlagFile() {
+        final BinaryFileFlagStore flagStore = new BinaryFileFlagStore(testApplication, "abc");
+        flagStore.applyFlagUpdate(new FlagBuilder("key1").version(1).build());
+        FlagStorePersister.getInstance().flushAll();
+
+        File file = BinaryFileFlagStore.fileForIdentifier(testApplication, "abc");
+        assertTrue(file.exists());
+        for (File other : testApplication.getFilesDir().listFiles()) {
+            if (other.getName().startsWith(file.getName())) {
+                assertEquals(file, other);
+            }
+        }
+    }
+
+    @Test
+    public void discardsCorruptFile() throws IOException {
+        File file = BinaryFileFlagStore.fileForIdentifier(testApplication, "abc");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13});
+        }
+
+        final BinaryFileFlagStore flagStore = new BinaryFileFlagStore(testApplication, "abc");
+        assertTrue(flagStore.getAllFlags().isEmpty());
+
+        flagStore.applyFlagUpdate(new FlagBuilder("key1").version(1).build());
+        final BinaryFileFlagStore reloaded = new BinaryFileFlagStore(testApplication, "abc");
+        assertEquals(1, reloaded.getFlag("key1").getVersion(), 0);
+    }
+}
@@ -0,0 +1,153 @@
+package com.launchdarkly.sdk.android;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class CachedFlagStoreTest {
+
+    @Rule
+    public TimberLoggingRule timberLoggingRule = new TimberLoggingRule();
+
+    private static class RecordingFlagStore extends CachedFlagStore {
+        final Map<String, Flag> persisted = new ConcurrentHashMap<>();
+        final List<Set<String>> writes = new CopyOnWriteArrayList<>();
+
+        RecordingFlagStore() {
+            super(null);
+        }
+
+        @NonNull
+        @Override
+        Map<String, Flag> loadFlags() {
+            return new HashMap<>(persisted);
+        }
+
+        @Override
+        void persistFlags(@NonNull Map<String, Flag> allFlags, @NonNull Map<String, Flag> updatedFlags,
+                          @NonNull Set<String> deletedKeys, boolean replaceAll) {
+            if (replaceAll) {
+                persisted.clear();
+            }
+            persisted.keySet().removeAll(deletedKeys);
+            persisted.putAll(updatedFlags);
+            Set<String> written = new HashSet<>(updatedFlags.keySet());
+            written.addAll(deletedKeys);
+            writes.add(written);
+        }
+
+        @Override
+        void deleteBackingStore() {
+            persisted.clear();
+        }
+    }
+
+    @Test
+    public void clearAndApplyWithNoChangesWritesNothing() {
+        final RecordingFlagStore flagStore = new RecordingFlagStore();
+        final List<Flag> flags = Arrays.asList(
+                new FlagBuilder("key1").value(LDValue.of(1)).version(1).build(),
+                new FlagBuilder("key2").value(LDValue.of(2)).version(2).build());
+        flagStore.clearAndApplyFlagUpdates(flags);
+        flagStore.flush();
+        assertEquals(1, flagStore.writes.size());
+
+        flagStore.clearAndApplyFlagUpdates(Arrays.asList(
+                new FlagBuilder("key1").value(LDValue.of(1)).version(1).build(),
+                new FlagBuilder("key2").value(LDValue.of(2)).version(2).build()));
+        flagStore.flush();
+        assertEquals(1, flagStore.writes.size());
+    }
+
+    @Test
+    public void clearAndApplyWritesOnlyChangedAddedAndRemovedKeys() {
+        final RecordingFlagStore flagStore = new RecordingFlagStore();
+        flagStore.clearAndApplyFlagUpdates(Arrays.asList(
+                new FlagBuilder("unchanged").value(LDValue.of(1)).version(1).build(),
+                new FlagBuilder("updated").value(LDValue.of(2)).version(2).build(),
+                new FlagBuilder("removed").value(LDValue.of(3)).version(3).build(),
+                new FlagBuilder("debugged").value(LDValue.of(4)).version(4).build()));
+        flagStore.flush();
+
+        flagStore.clearAndApplyFlagUpdates(Arrays.asList(
+                new FlagBuilder("unchanged").value(LDValue.of(1)).version(1).build(),
+                new FlagBuilder("updated").value(LDValue.of(5)).version(3).build(),
+                new FlagBuilder("added").value(LDValue.of(6)).version(1).build(),
+                new FlagBuilder("debugged").value(LDValue.of(4)).version(4).debugEventsUntilDate(100L).build()));
+        flagStore.flush();
+
+        assertEquals(2, flagStore.writes.size());
+        assertEquals(new HashSet<>(Arrays.asList("updated", "added", "removed", "debugged")), flagStore.writes.get(1));
+        assertEquals(LDValue.of(5), flagStore.persisted.get("updated").getValue());
+        assertFalse(flagStore.persisted.containsKey("removed"));
+        assertTrue(flagStore.persisted.containsKey("unchanged"));
+        assertEquals(4, flagStore.getAllFlags().size());
+    }
+
+    @Test
+    public void flagsWithoutVersionAreAlwaysWritten() {
+        final RecordingFlagStore flagStore = new RecordingFlagStore();
+        flagStore.clearAndApplyFlagUpdates(Collections.singletonList(new FlagBuilder("key1").value(LDValue.of(1)).build()));
+        flagStore.flush();
+        flagStore.clearAndApplyFlagUpdates(Collections.singletonList(new FlagBuilder("key1").value(LDValue.of(2)).build()));
+        flagStore.flush();
+
+        assertEquals(2, flagStore.writes.size());
+        assertEquals(LDValue.of(2), flagStore.getFlag("key1").getValue());
+    }
+
+    @Test
+    public void updatesAreAppliedImmediatelyAndWrittenBehind() throws InterruptedException {
+        final RecordingFlagStore flagStore = new RecordingFlagStore();
+        flagStore.applyFlagUpdate(new FlagBuilder("key1").value(LDValue.of(1)).version(1).build());
+        assertEquals(LDValue.of(1), flagStore.getFlag("key1").getValue());
+
+        Thread.sleep(FlagStorePersister.FLUSH_DELAY_MILLIS * 4);
+        assertEquals(1, flagStore.writes.size());
+        assertTrue(flagStore.persisted.containsKey("key1"));
+    }
+
+    @Test
+    public void burstOfUpdatesIsCoalesced() {
+        final RecordingFlagStore flagStore = new RecordingFlagStore();
+        for (int i = 0; i < 20; i++) {
+            flagStore.applyFlagUpdate(new FlagBuilder("key" + (i % 5)).value(LDValue.of(i)).version(i).build());
+        }
+        FlagStorePersister.getInstance().flushAll();
+
+        assertTrue(flagStore.writes.size() < 20);
+        assertEquals(5, flagStore.persisted.size());
+        assertEquals(LDValue.of(19), flagStore.persisted.get("key4").getValue());
+    }
+
+    @Test
+    public void deletedKeysAreNotWrittenBack() {
+        final RecordingFlagStore flagStore = new RecordingFlagStore();
+        flagStore.applyFlagUpdate(new FlagBuilder("key1").value(LDValue.of(1)).version(1).build());
+        flagStore.applyFlagUpdate(new DeleteFlagResponse("key1", 2));
+        flagStore.flush();
+
+        assertFalse(flagStore.persisted.containsKey("key1"));
+        assertEquals(0, flagStore.getAllFlags().size());
+    }
+}
@@ -16,6 +16,8 @@ import okhttp3.OkHttpClient;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okio.GzipSource;
+import okio.Okio;
 
 import static junit.framework.Assert.assertEquals;
 
@@ -116,6 +118,29 @@ public class DiagnosticEventProcessorTest {
         assertEquals(GsonCache.getGson().toJson(testEvent), r.getBody().readUtf8());
     }
 
+    @Test
+    public void compressedDiagnosticRequest() throws InterruptedException, IOException {
+        // Setup in background to prevent initial diagnostic event
+        ForegroundTestController.setup(false);
+        OkHttpClient okHttpClient = new OkHttpClient.Builder().build();
+        LDConfig ldConfig = new LDConfig.Builder()
+                .mobileKey("test-mobile-key")
+                .eventsUri(Uri.parse(mockEventsServer.url("").toString()))
+                .compressEvents(true)
+                .build();
+        DiagnosticStore diagnosticStore = new DiagnosticStore(ApplicationProvider.getApplicationContext(), "test-mobile-key");
+        DiagnosticEventProcessor diagnosticEventProcessor = new DiagnosticEventProcessor(ldConfig, "default", diagnosticStore, ApplicationProvider.getApplicationContext(), okHttpClient);
+
+        DiagnosticEvent testEvent = new DiagnosticEvent("test-kind", System.currentTimeMillis(), diagnosticStore.getDiagnosticId());
+
+        mockEventsServer.enqueue(new MockResponse());
+        diagnosticEventProcessor.sendDiagnosticEventSync(testEvent);
+        RecordedRequest r = mockEventsServer.takeRequest();
+        assertEquals("gzip", r.getHeader("Content-Encoding"));
+        assertEquals("application/json; charset=utf-8", r.getHeader("Content-Type"));
+        assertEquals(GsonCache.getGson().toJson(testEvent), Okio.buffer(new GzipSource(r.getBody())).readUtf8());
+    }
+
     @Test
     public void closeWithoutStart() {
         ForegroundTestController.setup(false);
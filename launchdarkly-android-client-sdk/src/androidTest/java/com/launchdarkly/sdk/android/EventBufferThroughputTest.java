@@ -0,0 +1,123 @@
+package com.launchdarkly.sdk.android;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.launchdarkly.sdk.LDUser;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures how the throughput of recording events scales with the number of threads recording
+ * them, comparing the lock-free ring buffer with the {@link ArrayBlockingQueue} it replaced. A
+ * consumer drains the buffer continuously, as flushes would. Throughput is logged rather than
+ * asserted, as it depends on the device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EventBufferThroughputTest {
+
+    private static final int EVENTS_PER_THREAD = 200000;
+    private static final int CAPACITY = 1024;
+    private static final int[] THREAD_COUNTS = {1, 4, 8};
+
+    @Rule
+    public TimberLoggingRule timberLoggingRule = new TimberLoggingRule();
+
+    private final CustomEvent event = new CustomEvent("event", new LDUser.Builder("userKey").build(), null, null, false);
+
+    @Test
+    public void throughputScalesWithRecordingThreads() throws InterruptedException {
+        for (int threads : THREAD_COUNTS) {
+            double blockingQueue = measure(new BlockingQueueBuffer(CAPACITY), threads);
+            double ringBuffer = measure(new EventRingBuffer(CAPACITY), threads);
+            LDConfig.LOG.i(String.format(Locale.US,
+                    "%d thread(s): blocking queue %.0f events/s, ring buffer %.0f events/s (%.2fx)",
+                    threads, blockingQueue, ringBuffer, ringBuffer / blockingQueue));
+        }
+    }
+
+    private double measure(EventBuffer buffer, int threads) throws InterruptedException {
+        // Warm up
+        run(buffer, threads, 10000);
+        long start = System.nanoTime();
+        run(buffer, threads, EVENTS_PER_THREAD);
+        long elapsed = System.nanoTime() - start;
+        return (double) threads * EVENTS_PER_THREAD * 1e9 / elapsed;
+    }
+
+    private void run(final EventBuffer buffer, int threads, final int events) throws InterruptedException {
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch go = new CountDownLatch(1);
+        final AtomicBoolean producing = new AtomicBoolean(true);
+        Thread consumer = new Thread(() -> {
+            List<Event> drained = new ArrayList<>(CAPACITY);
+            while (producing.get()) {
+                buffer.drainTo(drained);
+                drained.clear();
+            }
+        });
+        consumer.start();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < events; i++) {
+                    // Events rejected by a full buffer count too, as they would be dropped
+                    buffer.offer(event);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        ready.await();
+        go.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        producing.set(false);
+        consumer.join();
+        buffer.drainTo(new ArrayList<Event>());
+    }
+
+    private static final class BlockingQueueBuffer implements EventBuffer {
+        private final ArrayBlockingQueue<Event> queue;
+
+        BlockingQueueBuffer(int capacity) {
+            queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        @Override
+        public boolean offer(Event event) {
+            return queue.offer(event);
+        }
+
+        @Override
+        public int drainTo(Collection<? super Event> events) {
+            return queue.drainTo(events);
+        }
+
+        @Override
+        public int size() {
+            return queue.size();
+        }
+
+        @Override
+        public int takeEvictedCount() {
+            return 0;
+        }
+    }
+}
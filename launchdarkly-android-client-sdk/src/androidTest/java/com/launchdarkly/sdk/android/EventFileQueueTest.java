@@ -0,0 +1,211 @@
+package com.launchdarkly.sdk.android;
+
+import android.app.Application;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.gson.Gson;
+import com.launchdarkly.sdk.LDUser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class EventFileQueueTest {
+
+    @Rule
+    public TimberLoggingRule timberLoggingRule = new TimberLoggingRule();
+
+    private final Gson gson = new Gson();
+    private final LDUser user = new LDUser.Builder("userKey").build();
+    private File directory;
+
+    @Before
+    public void setUp() {
+        Application application = ApplicationProvider.getApplicationContext();
+        directory = new File(application.getCacheDir(), "eventFileQueueTest");
+        deleteDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        deleteDirectory();
+    }
+
+    @Test
+    public void drainedEventsAreKeptUntilAcknowledged() {
+        EventFileQueue queue = new EventFileQueue(directory, gson, 100_000);
+        assertTrue(queue.append(new CustomEvent("first", user, null, null, false)));
+        assertTrue(queue.append(new CustomEvent("second", user, null, null, false)));
+
+        EventFileQueue.Batch batch = queue.drain();
+        List<String> events = batch.readEvents();
+        assertEquals(2, events.size());
+        assertEquals("first", gson.fromJson(events.get(0), CustomEvent.class).key);
+        assertEquals("second", gson.fromJson(events.get(1), CustomEvent.class).key);
+
+        // Released without being acknowledged, so returned again along with newer events
+        assertTrue(queue.append(new CustomEvent("third", user, null, null, false)));
+        queue.release(batch);
+        batch = queue.drain();
+        assertEquals(3, batch.readEvents().size());
+
+        queue.acknowledge(batch);
+        assertTrue(queue.isEmpty());
+        assertTrue(queue.drain().isEmpty());
+    }
+
+    @Test
+    public void eventsAreAppendedInBatches() {
+        EventFileQueue queue = new EventFileQueue(directory, gson, 100_000);
+        List<Event> appended = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            appended.add(new CustomEvent("event-" + i, user, null, null, false));
+        }
+        assertEquals(5, queue.appendAll(appended));
+        queue.close();
+
+        // Written through to the file, so a new queue replays them
+        List<String> events = new EventFileQueue(directory, gson, 100_000).drain().readEvents();
+        assertEquals(5, events.size());
+        assertEquals("event-0", gson.fromJson(events.get(0), CustomEvent.class).key);
+        assertEquals("event-4", gson.fromJson(events.get(4), CustomEvent.class).key);
+    }
+
+    @Test
+    public void eventsInFlightAreNotDrainedAgain() {
+        EventFileQueue queue = new EventFileQueue(directory, gson, 100_000);
+        queue.append(new CustomEvent("first", user, null, null, false));
+        EventFileQueue.Batch inFlight = queue.drain();
+
+        queue.append(new CustomEvent("second", user, null, null, false));
+        EventFileQueue.Batch next = queue.drain();
+        List<String> events = next.readEvents();
+        assertEquals(1, events.size());
+        assertEquals("second", gson.fromJson(events.get(0), CustomEvent.class).key);
+
+        queue.acknowledge(next);
+        assertFalse(queue.isEmpty());
+        queue.acknowledge(inFlight);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void slicedSegmentsAreDeletedOnceEverySliceIsAcknowledged() {
+        // One event per segment
+        EventFileQueue queue = new EventFileQueue(directory, gson, 100_000, 1);
+        for (int i = 0; i < 4; i++) {
+            queue.append(new CustomEvent("event-" + i, user, null, null, false));
+        }
+        EventFileQueue.Batch batch = queue.drain();
+        assertEquals(4, batch.readEvents().size());
+        EventFileQueue.Batch first = queue.slice(batch, 0, 2);
+        EventFileQueue.Batch second = queue.slice(batch, 2, 4);
+        queue.acknowledge(batch);
+        assertFalse(queue.isEmpty());
+
+        queue.acknowledge(first);
+        assertFalse(queue.isEmpty());
+        queue.acknowledge(second);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void releasedSliceIsDrainedAgain() {
+        EventFileQueue queue = new EventFileQueue(directory, gson, 100_000, 1);
+        for (int i = 0; i < 4; i++) {
+            queue.append(new CustomEvent("event-" + i, user, null, null, false));
+        }
+        EventFileQueue.Batch batch = queue.drain();
+        batch.readEvents();
+        EventFileQueue.Batch first = queue.slice(batch, 0, 2);
+        EventFileQueue.Batch second = queue.slice(batch, 2, 4);
+        queue.acknowledge(batch);
+
+        // Releasing one slice does not lose its events, even once the other is acknowledged
+        queue.release(second);
+        queue.acknowledge(first);
+        List<String> events = queue.drain().readEvents();
+        assertEquals(2, events.size());
+        assertEquals("event-2", gson.fromJson(events.get(0), CustomEvent.class).key);
+        assertEquals("event-3", gson.fromJson(events.get(1), CustomEvent.class).key);
+    }
+
+    @Test
+    public void eventsAreReplayedByNewQueue() {
+        EventFileQueue queue = new EventFileQueue(directory, gson, 100_000);
+        queue.append(new IdentifyEvent(user));
+        queue.append(new CustomEvent("custom", user, null, null, false));
+        queue.close();
+
+        EventFileQueue reopened = new EventFileQueue(directory, gson, 100_000);
+        reopened.append(new CustomEvent("later", user, null, null, false));
+        List<String> events = reopened.drain().readEvents();
+        assertEquals(3, events.size());
+        assertEquals("identify", gson.fromJson(events.get(0), Event.class).kind);
+        assertEquals("custom", gson.fromJson(events.get(1), CustomEvent.class).key);
+        assertEquals("later", gson.fromJson(events.get(2), CustomEvent.class).key);
+    }
+
+    @Test
+    public void partiallyWrittenRecordIsIgnored() throws IOException {
+        EventFileQueue queue = new EventFileQueue(directory, gson, 100_000);
+        queue.append(new CustomEvent("complete", user, null, null, false));
+        queue.close();
+        File[] segments = directory.listFiles();
+        assertEquals(1, segments.length);
+        try (FileOutputStream out = new FileOutputStream(segments[0], true)) {
+            out.write("{\"kind\":\"cus".getBytes("UTF-8"));
+        }
+
+        List<String> events = new EventFileQueue(directory, gson, 100_000).drain().readEvents();
+        assertEquals(1, events.size());
+        assertEquals("complete", gson.fromJson(events.get(0), CustomEvent.class).key);
+    }
+
+    @Test
+    public void oldestSegmentsAreDiscardedAtCapacity() {
+        int recordBytes = (gson.toJson(new CustomEvent("event-00", user, null, null, false)) + "\n").length();
+        // Two records per segment and room for three segments
+        EventFileQueue queue = new EventFileQueue(directory, gson, recordBytes * 6, recordBytes * 2);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.append(new CustomEvent(String.format("event-%02d", i), user, null, null, false)));
+        }
+
+        List<String> events = queue.drain().readEvents();
+        assertEquals(6, events.size());
+        assertEquals("event-04", gson.fromJson(events.get(0), CustomEvent.class).key);
+        assertEquals("event-09", gson.fromJson(events.get(5), CustomEvent.class).key);
+    }
+
+    @Test
+    public void eventLargerThanCapacityIsRejected() {
+        EventFileQueue queue = new EventFileQueue(directory, gson, 10);
+        assertFalse(queue.append(new CustomEvent("custom", user, null, null, false)));
+        assertTrue(queue.isEmpty());
+    }
+
+    private void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -16,7 +16,11 @@ import org.easymock.EasyMockSupport;
 import org.easymock.IArgumentMatcher;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Objects;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -53,6 +57,7 @@ public abstract class FlagStoreManagerTest extends EasyMockSupport {
         final FlagStoreManager manager = createFlagStoreManager("testKey", mockCreate, 0);
 
         expect(mockCreate.createFlagStore(anyString())).andReturn(mockStore);
+        mockStore.openSnapshot();
         mockStore.registerOnStoreUpdatedListener(isA(StoreUpdatedListener.class));
 
         replayAll();
@@ -71,18 +76,20 @@ public abstract class FlagStoreManagerTest extends EasyMockSupport {
         final Capture<String> firstUserIdentifier = newCapture();
         final FlagStore secondUserStore = strictMock(FlagStore.class);
         final Capture<String> secondUserIdentifier = newCapture();
+        final Capture<Collection<String>> deletedIdentifiers = newCapture();
 
         final FlagStoreManager manager = createFlagStoreManager("testKey", mockCreate, 0);
 
         expect(mockCreate.createFlagStore(capture(firstUserIdentifier))).andReturn(firstUserStore).once();
+        firstUserStore.openSnapshot();
         firstUserStore.registerOnStoreUpdatedListener(isA(StoreUpdatedListener.class));
         firstUserStore.unregisterOnStoreUpdatedListener();
 
         expect(mockCreate.createFlagStore(capture(secondUserIdentifier))).andReturn(secondUserStore).once();
+        secondUserStore.openSnapshot();
         secondUserStore.registerOnStoreUpdatedListener(isA(StoreUpdatedListener.class));
 
-        expect(mockCreate.createFlagStore(captureEq(firstUserIdentifier))).andReturn(firstUserStore).once();
-        firstUserStore.delete();
+        mockCreate.deleteFlagStores(capture(deletedIdentifiers));
 
         replayAll();
 
@@ -94,6 +101,7 @@ public abstract class FlagStoreManagerTest extends EasyMockSupport {
 
         assertSame(secondUserStore, manager.getCurrentUserStore());
         assertNotEquals(firstUserIdentifier.getValue(), secondUserIdentifier.getValue());
+        assertEquals(Collections.singletonList(firstUserIdentifier.getValue()), new ArrayList<>(deletedIdentifiers.getValue()));
     }
 
     @Test
@@ -103,6 +111,8 @@ public abstract class FlagStoreManagerTest extends EasyMockSupport {
         final FlagStoreManager manager = createFlagStoreManager("testKey", mockCreate,-1);
 
         checkOrder(fillerStore, false);
+        fillerStore.openSnapshot();
+        expectLastCall().anyTimes();
         fillerStore.registerOnStoreUpdatedListener(anyObject(StoreUpdatedListener.class));
         expectLastCall().anyTimes();
         fillerStore.unregisterOnStoreUpdatedListener();
@@ -126,12 +136,15 @@ public abstract class FlagStoreManagerTest extends EasyMockSupport {
         final FlagStore newStore = strictMock(FlagStore.class);
         final Capture<String> storeId1 = newCapture();
         final Capture<String> storeId2 = newCapture();
+        final Capture<Collection<String>> deletedIdentifiers = newCapture();
         FlagStoreManager manager = createFlagStoreManager("testKey", mockCreate,1);
 
+        fillerStore1.openSnapshot();
         fillerStore1.registerOnStoreUpdatedListener(anyObject(StoreUpdatedListener.class));
         expectLastCall();
         fillerStore1.unregisterOnStoreUpdatedListener();
         expectLastCall();
+        fillerStore2.openSnapshot();
         fillerStore2.registerOnStoreUpdatedListener(anyObject(StoreUpdatedListener.class));
         expectLastCall();
         expect(mockCreate.createFlagStore(capture(storeId1))).andReturn(fillerStore1);
@@ -149,12 +162,9 @@ public abstract class FlagStoreManagerTest extends EasyMockSupport {
 
         checkOrder(mockCreate, false);
         expect(mockCreate.createFlagStore(and(captureNeq(storeId1), captureNeq(storeId2)))).andReturn(newStore);
-        expect(mockCreate.createFlagStore(captureEq(storeId1))).andReturn(fillerStore1);
-        expect(mockCreate.createFlagStore(captureEq(storeId2))).andReturn(fillerStore2);
+        newStore.openSnapshot();
         newStore.registerOnStoreUpdatedListener(anyObject(StoreUpdatedListener.class));
-        fillerStore1.delete();
-        expectLastCall();
-        fillerStore2.delete();
+        mockCreate.deleteFlagStores(capture(deletedIdentifiers));
 
         replayAll();
 
@@ -162,6 +172,9 @@ public abstract class FlagStoreManagerTest extends EasyMockSupport {
         manager.switchToUser("user3");
 
         verifyAll();
+        // Both excess users are removed with a single batched delete
+        assertEquals(new HashSet<>(Arrays.asList(storeId1.getValue(), storeId2.getValue())),
+                new HashSet<>(deletedIdentifiers.getValue()));
     }
 
     public void verifyDeletesOldestWithMaxCachedUsers(int maxCachedUsers) throws InterruptedException {
@@ -170,29 +183,23 @@ public abstract class FlagStoreManagerTest extends EasyMockSupport {
         final FlagStore fillerStore = strictMock(FlagStore.class);
         final FlagStoreManager manager = createFlagStoreManager("testKey", mockCreate, maxCachedUsers);
         final Capture<String> oldestIdentifier = newCapture();
-        final int[] oldestCountBox = {0};
-        final FlagStoreFactory delegate = identifier -> {
-            if (identifier.equals(oldestIdentifier.getValue())) {
-                oldestCountBox[0]++;
-                return oldestStore;
-            }
-            return fillerStore;
-        };
+        final Capture<Collection<String>> deletedIdentifiers = newCapture();
 
         checkOrder(fillerStore, false);
+        fillerStore.openSnapshot();
+        expectLastCall().anyTimes();
         fillerStore.registerOnStoreUpdatedListener(anyObject(StoreUpdatedListener.class));
         expectLastCall().anyTimes();
         fillerStore.unregisterOnStoreUpdatedListener();
         expectLastCall().anyTimes();
         expect(mockCreate.createFlagStore(capture(oldestIdentifier))).andReturn(oldestStore);
+        oldestStore.openSnapshot();
         oldestStore.registerOnStoreUpdatedListener(anyObject(StoreUpdatedListener.class));
         expectLastCall();
         oldestStore.unregisterOnStoreUpdatedListener();
         expectLastCall();
         expect(mockCreate.createFlagStore(captureNeq(oldestIdentifier))).andReturn(fillerStore).times(maxCachedUsers + 1);
-        expect(mockCreate.createFlagStore(captureEq(oldestIdentifier))).andReturn(oldestStore);
-        oldestStore.delete();
-        expectLastCall();
+        mockCreate.deleteFlagStores(capture(deletedIdentifiers));
 
         replayAll();
 
@@ -206,6 +213,7 @@ public abstract class FlagStoreManagerTest extends EasyMockSupport {
         }
 
         verifyAll();
+        assertEquals(Collections.singletonList(oldestIdentifier.getValue()), new ArrayList<>(deletedIdentifiers.getValue()));
     }
 
     @Test
@@ -16,15 +16,25 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okio.GzipSource;
+import okio.Okio;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -80,6 +90,42 @@ public class LDClientTest {
         assertEquals(ldClient.jsonValueVariation("jsonFlag", null), LDValue.ofNull());
     }
 
+    @Test
+    public void variationsReturnsValuesAndDefaults() throws IOException {
+        LDConfig config = new LDConfig.Builder().mobileKey(mobileKey).offline(true).build();
+        TestUtil.markMigrationComplete(application);
+        FlagStore flagStore = new SharedPrefsFlagStoreFactory(application).createFlagStore(mobileKey + DefaultUserManager.sharedPrefs(ldUser));
+        flagStore.clear();
+        flagStore.applyFlagUpdates(Arrays.<FlagUpdate>asList(
+                new FlagBuilder("boolFlag").value(LDValue.of(true)).version(1).build(),
+                new FlagBuilder("intFlag").value(LDValue.of(7)).version(1).build(),
+                new FlagBuilder("wrongTypeFlag").value(LDValue.of("text")).version(1).build()));
+
+        try (LDClient client = LDClient.init(application, config, ldUser, 1)) {
+            Map<String, LDValue> defaults = new HashMap<>();
+            defaults.put("boolFlag", LDValue.of(false));
+            defaults.put("intFlag", LDValue.of(1));
+            defaults.put("wrongTypeFlag", LDValue.of(2.5));
+            defaults.put("missingFlag", LDValue.of("default"));
+            client.getSummaryEventStore().clear();
+
+            LDFlagValues values = client.variations(defaults);
+            assertEquals(4, values.size());
+            assertTrue(values.getBoolean("boolFlag"));
+            assertEquals(7, values.getInt("intFlag"));
+            assertEquals(2.5, values.getDouble("wrongTypeFlag"), 0.0);
+            assertEquals("default", values.getString("missingFlag"));
+            assertFalse(values.contains("otherFlag"));
+            assertEquals(LDValue.ofNull(), values.getValue("otherFlag"));
+
+            Map<String, SummaryEventStore.FlagCounters> features = client.getSummaryEventStore().getSummaryEvent().features;
+            assertEquals(4, features.size());
+            assertEquals(1, features.get("intFlag").counters.get(0).count);
+            assertEquals(LDValue.of(7), features.get("intFlag").counters.get(0).value);
+            assertTrue(features.get("missingFlag").counters.get(0).isUnknown());
+        }
+    }
+
     @Test
     public void testInitMissingApplication() {
         ExecutionException actualFutureException = null;
@@ -581,11 +627,342 @@ public class LDClientTest {
             LDConfig ldConfig = baseConfigBuilder(mockEventsServer).build();
             try (LDClient client = LDClient.init(application, ldConfig, ldUser, 0)) {
                 client.blockingFlush();
+
+                // The retry is scheduled after a delay rather than made by the flush
+                String initialPayloadId = mockEventsServer.takeRequest(5, TimeUnit.SECONDS).getHeader("X-LaunchDarkly-Payload-ID");
+                String retryPayloadId = mockEventsServer.takeRequest(5, TimeUnit.SECONDS).getHeader("X-LaunchDarkly-Payload-ID");
+                assertEquals(initialPayloadId, retryPayloadId);
             }
+        }
+    }
 
-            String initialPayloadId = mockEventsServer.takeRequest(0, TimeUnit.SECONDS).getHeader("X-LaunchDarkly-Payload-ID");
-            String retryPayloadId = mockEventsServer.takeRequest(0, TimeUnit.SECONDS).getHeader("X-LaunchDarkly-Payload-ID");
-            assertEquals(initialPayloadId, retryPayloadId);
+    @Test
+    public void eventPayloadIsRetriedWithBackoffWithoutBlockingFlush() throws IOException, InterruptedException {
+        try (MockWebServer mockEventsServer = new MockWebServer()) {
+            mockEventsServer.start();
+            // Enqueue two failures, the second asking for a delay, followed by successful response
+            mockEventsServer.enqueue(new MockResponse().setResponseCode(503));
+            mockEventsServer.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "1"));
+            mockEventsServer.enqueue(new MockResponse());
+
+            LDConfig ldConfig = baseConfigBuilder(mockEventsServer).build();
+            try (LDClient client = LDClient.init(application, ldConfig, ldUser, 0)) {
+                long start = System.currentTimeMillis();
+                client.blockingFlush();
+                assertTrue(System.currentTimeMillis() - start < 1000);
+
+                RecordedRequest first = mockEventsServer.takeRequest(5, TimeUnit.SECONDS);
+                RecordedRequest second = mockEventsServer.takeRequest(5, TimeUnit.SECONDS);
+                RecordedRequest third = mockEventsServer.takeRequest(5, TimeUnit.SECONDS);
+                assertNotNull(third);
+                assertEquals(first.getHeader("X-LaunchDarkly-Payload-ID"), second.getHeader("X-LaunchDarkly-Payload-ID"));
+                assertEquals(first.getHeader("X-LaunchDarkly-Payload-ID"), third.getHeader("X-LaunchDarkly-Payload-ID"));
+                assertEquals(first.getBody().readUtf8(), third.getBody().readUtf8());
+            }
+        }
+    }
+
+    @Test
+    public void eventsAreCompressedWhenEnabled() throws IOException, InterruptedException {
+        try (MockWebServer mockEventsServer = new MockWebServer()) {
+            mockEventsServer.start();
+            // Enqueue a successful empty response
+            mockEventsServer.enqueue(new MockResponse());
+
+            LDConfig ldConfig = baseConfigBuilder(mockEventsServer).compressEvents(true).build();
+            try (LDClient client = LDClient.init(application, ldConfig, ldUser, 0)) {
+                client.track("test-event");
+                client.blockingFlush();
+            }
+
+            RecordedRequest r = mockEventsServer.takeRequest();
+            assertEquals("gzip", r.getHeader("Content-Encoding"));
+            String body = Okio.buffer(new GzipSource(r.getBody())).readUtf8();
+            Event[] events = TestUtil.getEventDeserializerGson().fromJson(body, Event[].class);
+            assertEquals(2, events.length);
+            assertTrue(events[0] instanceof IdentifyEvent);
+            assertTrue(events[1] instanceof CustomEvent);
+            assertEquals("test-event", ((CustomEvent) events[1]).key);
+        }
+    }
+
+    @Test
+    public void eventsAreFlushedEarlyAtHighWaterMark() throws IOException, InterruptedException {
+        try (MockWebServer mockEventsServer = new MockWebServer()) {
+            mockEventsServer.start();
+            // Enqueue a successful empty response
+            mockEventsServer.enqueue(new MockResponse());
+
+            LDConfig ldConfig = baseConfigBuilder(mockEventsServer)
+                    .eventsFlushIntervalMillis(600_000)
+                    .eventsFlushHighWaterMark(3)
+                    .build();
+            try (LDClient client = LDClient.init(application, ldConfig, ldUser, 0)) {
+                // Along with the identify event from initialization, this reaches the mark
+                client.track("first-event");
+                client.track("second-event");
+
+                RecordedRequest r = mockEventsServer.takeRequest(5, TimeUnit.SECONDS);
+                assertNotNull("events were not flushed early", r);
+                Event[] events = TestUtil.getEventDeserializerGson().fromJson(r.getBody().readUtf8(), Event[].class);
+                assertEquals(3, events.length);
+                assertTrue(events[0] instanceof IdentifyEvent);
+                assertEquals("first-event", ((CustomEvent) events[1]).key);
+                assertEquals("second-event", ((CustomEvent) events[2]).key);
+            }
+        }
+    }
+
+    @Test
+    public void eventsKeptOnDiskAreDelivered() throws IOException, InterruptedException {
+        try (MockWebServer mockEventsServer = new MockWebServer()) {
+            mockEventsServer.start();
+            // Enqueue a successful empty response
+            mockEventsServer.enqueue(new MockResponse());
+
+            LDConfig ldConfig = baseConfigBuilder(mockEventsServer).eventsDiskCapacityBytes(100_000).build();
+            try (LDClient client = LDClient.init(application, ldConfig, ldUser, 0)) {
+                client.track("first-event");
+                client.track("second-event");
+                client.blockingFlush();
+            }
+
+            Event[] events = getEventsFromLastRequest(mockEventsServer, 3);
+            assertTrue(events[0] instanceof IdentifyEvent);
+            assertEquals("first-event", ((CustomEvent) events[1]).key);
+            assertEquals("second-event", ((CustomEvent) events[2]).key);
+        }
+    }
+
+    @Test
+    public void aggregatedMetricEventsKeptOnDiskAreDelivered() throws IOException, InterruptedException {
+        try (MockWebServer mockEventsServer = new MockWebServer()) {
+            mockEventsServer.start();
+            // Enqueue a successful empty response
+            mockEventsServer.enqueue(new MockResponse());
+
+            LDConfig ldConfig = baseConfigBuilder(mockEventsServer)
+                    .eventsDiskCapacityBytes(100_000)
+                    .metricEventAggregationCapacity(10)
+                    .build();
+            try (LDClient client = LDClient.init(application, ldConfig, ldUser, 0)) {
+                client.trackMetric("metric", null, 1.0);
+                client.trackMetric("metric", null, 3.0);
+                client.blockingFlush();
+            }
+
+            Event[] events = getEventsFromLastRequest(mockEventsServer, 2);
+            assertTrue(events[0] instanceof IdentifyEvent);
+            CustomEvent aggregated = (CustomEvent) events[1];
+            assertEquals("metric", aggregated.key);
+            assertEquals(Integer.valueOf(2), aggregated.count);
+            assertEquals(4.0, aggregated.metricSum, 0.0);
+        }
+    }
+
+    @Test
+    public void stoppedEventProcessorDoesNotFlush() throws IOException, InterruptedException {
+        try (MockWebServer mockClientServer = new MockWebServer();
+             MockWebServer mockEventsServer = new MockWebServer()) {
+            mockClientServer.start();
+            mockEventsServer.start();
+            mockEventsServer.enqueue(new MockResponse());
+
+            // The client only makes the environment count as connected for the processor
+            try (LDClient client = LDClient.init(application, baseConfigBuilder(mockClientServer).build(), ldUser, 0)) {
+                LDConfig ldConfig = baseConfigBuilder(mockEventsServer).eventsFlushIntervalMillis(200).build();
+                SharedPrefsSummaryEventStore summaryEventStore =
+                        new SharedPrefsSummaryEventStore(application, "LaunchDarkly-stoppedProcessorTest-summaryevents");
+                DefaultEventProcessor eventProcessor = new DefaultEventProcessor(application, ldConfig,
+                        summaryEventStore, LDConfig.primaryEnvironmentName, null, new OkHttpClient());
+                eventProcessor.start();
+                eventProcessor.sendEvent(new CustomEvent("test-event", ldUser, null, null, false));
+                eventProcessor.stop();
+
+                assertNull(mockEventsServer.takeRequest(1, TimeUnit.SECONDS));
+                summaryEventStore.clear();
+            }
+        }
+    }
+
+    @Test
+    public void repeatedFlushesDoNotCreateThreads() throws IOException {
+        try (MockWebServer mockEventsServer = new MockWebServer()) {
+            mockEventsServer.start();
+            // Enqueue a successful empty response
+            mockEventsServer.enqueue(new MockResponse());
+
+            LDConfig ldConfig = baseConfigBuilder(mockEventsServer).build();
+            try (LDClient client = LDClient.init(application, ldConfig, ldUser, 0)) {
+                // Sends the identify event, so that later flushes have nothing to send
+                client.blockingFlush();
+                int threadCount = Thread.activeCount();
+
+                for (int i = 0; i < 10_000; i++) {
+                    client.flush();
+                }
+                // Waits for any flush still in progress
+                client.blockingFlush();
+
+                assertEquals(threadCount, Thread.activeCount());
+            }
+        }
+    }
+
+    @Test
+    public void largeFlushIsSplitIntoPayloadsWithinLimit() throws IOException, InterruptedException {
+        try (MockWebServer mockEventsServer = new MockWebServer()) {
+            mockEventsServer.start();
+            for (int i = 0; i < 20; i++) {
+                mockEventsServer.enqueue(new MockResponse());
+            }
+
+            LDConfig ldConfig = baseConfigBuilder(mockEventsServer).eventsMaxPayloadBytes(400).build();
+            try (LDClient client = LDClient.init(application, ldConfig, ldUser, 0)) {
+                for (int i = 0; i < 10; i++) {
+                    client.track("event-" + i);
+                }
+                client.blockingFlush();
+            }
+
+            int requests = mockEventsServer.getRequestCount();
+            assertTrue(requests > 1);
+            Set<String> payloadIds = new HashSet<>();
+            List<String> keys = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                RecordedRequest r = mockEventsServer.takeRequest();
+                payloadIds.add(r.getHeader("X-LaunchDarkly-Payload-ID"));
+                assertTrue(r.getBodySize() <= 400);
+                for (Event event : TestUtil.getEventDeserializerGson().fromJson(r.getBody().readUtf8(), Event[].class)) {
+                    if (event instanceof CustomEvent) {
+                        keys.add(((CustomEvent) event).key);
+                    }
+                }
+            }
+            assertEquals(requests, payloadIds.size());
+            assertEquals(10, keys.size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals("event-" + i, keys.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void splitPayloadsDiscardedFromRetriesAreSentLater() throws IOException, InterruptedException {
+        try (MockWebServer mockEventsServer = new MockWebServer()) {
+            mockEventsServer.start();
+            // The first payload fails, so the payloads of the flush wait for a retry
+            mockEventsServer.enqueue(new MockResponse().setResponseCode(503));
+            for (int i = 0; i < 40; i++) {
+                mockEventsServer.enqueue(new MockResponse());
+            }
+
+            // Only room for one payload to be retried, so the others are discarded
+            LDConfig ldConfig = baseConfigBuilder(mockEventsServer)
+                    .eventsDiskCapacityBytes(100_000)
+                    .eventsMaxPayloadBytes(400)
+                    .eventsRetryCapacityBytes(400)
+                    .build();
+            Set<String> keys = new HashSet<>();
+            try (LDClient client = LDClient.init(application, ldConfig, ldUser, 0)) {
+                for (int i = 0; i < 10; i++) {
+                    client.track("event-" + i);
+                }
+                client.blockingFlush();
+                mockEventsServer.takeRequest();
+                // Waits for the retry to be delivered
+                collectCustomEventKeys(mockEventsServer, keys);
+                assertTrue(keys.size() < 10);
+
+                // The discarded events are still on disk
+                client.blockingFlush();
+                collectCustomEventKeys(mockEventsServer, keys);
+            }
+
+            for (int i = 0; i < 10; i++) {
+                assertTrue(keys.contains("event-" + i));
+            }
+        }
+    }
+
+    @Test
+    public void eachSplitPayloadIndexesItsUsers() throws IOException, InterruptedException {
+        try (MockWebServer mockEventsServer = new MockWebServer()) {
+            mockEventsServer.start();
+            for (int i = 0; i < 20; i++) {
+                mockEventsServer.enqueue(new MockResponse());
+            }
+
+            LDConfig ldConfig = baseConfigBuilder(mockEventsServer)
+                    .inlineUsersInEvents(true)
+                    .userIndexEvents(true)
+                    .eventsMaxPayloadBytes(400)
+                    .build();
+            try (LDClient client = LDClient.init(application, ldConfig, ldUser, 0)) {
+                for (int i = 0; i < 10; i++) {
+                    client.track("event-" + i);
+                }
+                client.blockingFlush();
+            }
+
+            int requests = mockEventsServer.getRequestCount();
+            assertTrue(requests > 1);
+            int customEvents = 0;
+            for (int i = 0; i < requests; i++) {
+                RecordedRequest r = mockEventsServer.takeRequest();
+                assertTrue(r.getBodySize() <= 400);
+                boolean userIndexed = false;
+                for (Event event : TestUtil.getEventDeserializerGson().fromJson(r.getBody().readUtf8(), Event[].class)) {
+                    if (event instanceof IdentifyEvent || event instanceof IndexEvent) {
+                        userIndexed = true;
+                    } else if (event instanceof CustomEvent) {
+                        assertTrue(userIndexed);
+                        assertEquals("userKey", ((CustomEvent) event).userKey);
+                        customEvents++;
+                    }
+                }
+            }
+            assertEquals(10, customEvents);
+        }
+    }
+
+    @Test
+    public void usersAreIndexedOncePerFlush() throws IOException, InterruptedException {
+        try (MockWebServer mockEventsServer = new MockWebServer()) {
+            mockEventsServer.start();
+            // Enqueue successful empty responses
+            mockEventsServer.enqueue(new MockResponse());
+            mockEventsServer.enqueue(new MockResponse());
+
+            LDConfig ldConfig = baseConfigBuilder(mockEventsServer)
+                    .inlineUsersInEvents(true)
+                    .userIndexEvents(true)
+                    .build();
+            try (LDClient client = LDClient.init(application, ldConfig, ldUser, 0)) {
+                client.track("first-event");
+                client.track("second-event");
+                client.blockingFlush();
+
+                // The identify event already carries the user
+                Event[] events = getEventsFromLastRequest(mockEventsServer, 3);
+                assertTrue(events[0] instanceof IdentifyEvent);
+                assertNotNull(((IdentifyEvent) events[0]).user);
+                for (int i = 1; i < 3; i++) {
+                    CustomEvent event = (CustomEvent) events[i];
+                    assertNull(event.user);
+                    assertEquals("userKey", event.userKey);
+                }
+
+                client.track("third-event");
+                client.track("fourth-event");
+                client.blockingFlush();
+
+                events = getEventsFromLastRequest(mockEventsServer, 3);
+                assertTrue(events[0] instanceof IndexEvent);
+                assertEquals("userKey", ((IndexEvent) events[0]).user.getKey());
+                assertNull(((CustomEvent) events[1]).user);
+                assertEquals("userKey", ((CustomEvent) events[2]).userKey);
+            }
         }
     }
 
@@ -659,6 +1036,17 @@ public class LDClientTest {
         return events;
     }
 
+    private void collectCustomEventKeys(MockWebServer server, Set<String> keys) throws InterruptedException {
+        RecordedRequest r;
+        while ((r = server.takeRequest(3, TimeUnit.SECONDS)) != null) {
+            for (Event event : TestUtil.getEventDeserializerGson().fromJson(r.getBody().readUtf8(), Event[].class)) {
+                if (event instanceof CustomEvent) {
+                    keys.add(((CustomEvent) event).key);
+                }
+            }
+        }
+    }
+
     private LDConfig.Builder baseConfigBuilder(MockWebServer server) {
         HttpUrl baseUrl = server.url("/");
         return new LDConfig.Builder()
@@ -315,6 +315,28 @@ public class LDConfigTest {
         assertTrue(config.isAutoAliasingOptOut());
     }
 
+    @Test
+    public void buildWithFlagStoreType() {
+        assertEquals(FlagStoreType.SHARED_PREFERENCES, new LDConfig.Builder().build().getFlagStoreType());
+        LDConfig config = new LDConfig.Builder().flagStoreType(FlagStoreType.BINARY_FILE).build();
+        assertEquals(FlagStoreType.BINARY_FILE, config.getFlagStoreType());
+        config = new LDConfig.Builder().flagStoreType(null).build();
+        assertEquals(FlagStoreType.SHARED_PREFERENCES, config.getFlagStoreType());
+    }
+
+    @Test
+    public void buildWithFlagKeyFilter() {
+        assertFalse(new LDConfig.Builder().build().getFlagFilter().isFiltering());
+        LDConfig config = new LDConfig.Builder()
+                .flagKeyAllowlist("flag-a", "flag-b")
+                .flagKeyPrefixes("android-")
+                .build();
+        FlagFilter filter = config.getFlagFilter();
+        assertTrue(filter.accepts("flag-a"));
+        assertTrue(filter.accepts("android-banner"));
+        assertFalse(filter.accepts("flag-c"));
+    }
+
     @Test
     public void keyShouldNeverBeRemoved() {
         // even with all attributes being private the key should always be retained
@@ -0,0 +1,111 @@
+package com.launchdarkly.sdk.android;
+
+import android.app.Application;
+import android.os.Debug;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SdkSuppress;
+
+import com.launchdarkly.sdk.LDUser;
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class PrimitiveVariationAllocationTest {
+
+    private static final String mobileKey = "test-mobile-key";
+    private static final int ITERATIONS = 1_000_000;
+
+    @Rule
+    public TimberLoggingRule timberLoggingRule = new TimberLoggingRule();
+
+    private LDClient client;
+
+    @Before
+    public void setUp() {
+        Application application = ApplicationProvider.getApplicationContext();
+        LDUser ldUser = LDClient.customizeUser(new LDUser.Builder("userKey").build());
+        TestUtil.markMigrationComplete(application);
+        FlagStore flagStore = new SharedPrefsFlagStoreFactory(application).createFlagStore(mobileKey + DefaultUserManager.sharedPrefs(ldUser));
+        flagStore.clearAndApplyFlagUpdates(Arrays.<FlagUpdate>asList(
+                new FlagBuilder("boolFlag").value(LDValue.of(true)).version(1).variation(0).build(),
+                new FlagBuilder("intFlag").value(LDValue.of(42)).version(1).variation(1).build(),
+                new FlagBuilder("doubleFlag").value(LDValue.of(1.5)).version(1).variation(2).build(),
+                new FlagBuilder("trackedFlag").value(LDValue.of(true)).version(1).trackEvents(true).build(),
+                new FlagBuilder("debuggedFlag").value(LDValue.of(true)).version(1)
+                        .debugEventsUntilDate(System.currentTimeMillis() + 3600000L).build()
+        ));
+
+        LDConfig config = new LDConfig.Builder().mobileKey(mobileKey).offline(true).build();
+        client = LDClient.init(application, config, ldUser, 1);
+        client.getSummaryEventStore().clear();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+    }
+
+    @Test
+    public void flagsWithFeatureEventsAreStillEvaluated() {
+        assertTrue(client.boolVariation("trackedFlag", false));
+        assertTrue(client.boolVariation("debuggedFlag", false));
+        // Wrong type and missing flags return the default
+        assertEquals(7, client.intVariation("boolFlag", 7));
+        assertFalse(client.boolVariation("missingFlag", false));
+
+        Map<String, SummaryEventStore.FlagCounters> features = client.getSummaryEventStore().getSummaryEvent().features;
+        assertEquals(1, features.get("trackedFlag").counters.get(0).count);
+        assertEquals(1, features.get("debuggedFlag").counters.get(0).count);
+    }
+
+    @Test
+    @SdkSuppress(minSdkVersion = 23)
+    public void steadyStatePrimitiveVariationsDoNotAllocate() {
+        // Warm up so that any lazy loading and decoding happens before counting
+        evaluate(100);
+
+        // The runtime counts the bytes allocated by every thread, in steps of a thread-local
+        // buffer, so the evaluations are allowed much less than a byte each rather than none
+        long allocatedBefore = allocatedBytes();
+        int result = evaluate(ITERATIONS);
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        assertEquals(ITERATIONS * 44, result);
+        assertTrue("allocated " + allocated + " bytes", allocated < ITERATIONS / 10);
+
+        // Every evaluation was counted in the summary, including those made while warming up
+        Map<String, SummaryEventStore.FlagCounters> features = client.getSummaryEventStore().getSummaryEvent().features;
+        assertEquals(ITERATIONS + 100, features.get("boolFlag").counters.get(0).count);
+        assertEquals(ITERATIONS + 100, features.get("intFlag").counters.get(0).count);
+        assertEquals(ITERATIONS + 100, features.get("doubleFlag").counters.get(0).count);
+    }
+
+    private static long allocatedBytes() {
+        return Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated"));
+    }
+
+    private int evaluate(int iterations) {
+        int result = 0;
+        for (int i = 0; i < iterations; i++) {
+            result += (client.boolVariation("boolFlag", false) ? 1 : 0)
+                    + client.intVariation("intFlag", 0)
+                    + (int) client.doubleVariation("doubleFlag", 0);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+package com.launchdarkly.sdk.android;
+
+import android.app.Application;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class SQLiteFlagStoreTest extends FlagStoreTest {
+
+    private static final String MOBILE_KEY = "mobile-key";
+
+    private Application testApplication;
+
+    @Rule
+    public TimberLoggingRule timberLoggingRule = new TimberLoggingRule();
+
+    @Before
+    public void setUp() {
+        this.testApplication = ApplicationProvider.getApplicationContext();
+        new SQLiteFlagStoreFactory(testApplication, MOBILE_KEY)
+                .deleteFlagStores(Arrays.asList(MOBILE_KEY + "abc", MOBILE_KEY + "user1", MOBILE_KEY + "user2", MOBILE_KEY + "user3"));
+    }
+
+    public FlagStore createFlagStore(String identifier) {
+        return new SQLiteFlagStoreFactory(testApplication, MOBILE_KEY).createFlagStore(MOBILE_KEY + identifier);
+    }
+
+    @Test
+    public void migratesFlagsFromSharedPreferences() {
+        final Flag key1 = new FlagBuilder("key1").value(LDValue.of(true)).version(12).build();
+        final SharedPrefsFlagStore legacyStore = new SharedPrefsFlagStore(testApplication, MOBILE_KEY + "abc");
+        legacyStore.applyFlagUpdate(key1);
+
+        final FlagStore flagStore = createFlagStore("abc");
+        assertEquals(LDValue.of(true), flagStore.getFlag("key1").getValue());
+        assertEquals(12, flagStore.getFlag("key1").getVersion(), 0);
+        assertFalse(SharedPrefsFlagStore.prefsFileForIdentifier(testApplication, MOBILE_KEY + "abc").exists());
+
+        // Migrated flags are read back from the database
+        final FlagStore reloaded = createFlagStore("abc");
+        assertEquals(12, reloaded.getFlag("key1").getVersion(), 0);
+    }
+
+    @Test
+    public void migrationIsOnlyAttemptedOnce() {
+        // Nothing to migrate, but the attempt is recorded
+        assertTrue(createFlagStore("abc").getAllFlags().isEmpty());
+
+        final SharedPrefsFlagStore legacyStore = new SharedPrefsFlagStore(testApplication, MOBILE_KEY + "abc");
+        legacyStore.applyFlagUpdate(new FlagBuilder("key1").version(12).build());
+        FlagStorePersister.getInstance().flushAll();
+
+        // The user has no rows, but the migration is not repeated
+        assertNull(createFlagStore("abc").getFlag("key1"));
+        legacyStore.delete();
+    }
+
+    @Test
+    public void usersAreStoredSeparately() {
+        createFlagStore("user1").applyFlagUpdate(new FlagBuilder("key1").version(1).build());
+        createFlagStore("user2").applyFlagUpdate(new FlagBuilder("key1").version(2).build());
+
+        assertEquals(1, createFlagStore("user1").getFlag("key1").getVersion(), 0);
+        assertEquals(2, createFlagStore("user2").getFlag("key1").getVersion(), 0);
+    }
+
+    @Test
+    public void deleteFlagStoresRemovesOnlyGivenUsers() {
+        createFlagStore("user1").applyFlagUpdate(new FlagBuilder("key1").version(1).build());
+        createFlagStore("user2").applyFlagUpdate(new FlagBuilder("key1").version(2).build());
+        createFlagStore("user3").applyFlagUpdate(new FlagBuilder("key1").version(3).build());
+
+        new SQLiteFlagStoreFactory(testApplication, MOBILE_KEY)
+                .deleteFlagStores(Arrays.asList(MOBILE_KEY + "user1", MOBILE_KEY + "user3"));
+
+        assertNull(createFlagStore("user1").getFlag("key1"));
+        assertEquals(2, createFlagStore("user2").getFlag("key1").getVersion(), 0);
+        assertNull(createFlagStore("user3").getFlag("key1"));
+    }
+
+    @Test
+    public void deleteFlagStoresDiscardsPendingWrites() {
+        final FlagStore flagStore = createFlagStore("user1");
+        flagStore.applyFlagUpdate(new FlagBuilder("key1").version(1).build());
+
+        new SQLiteFlagStoreFactory(testApplication, MOBILE_KEY)
+                .deleteFlagStores(Collections.singletonList(MOBILE_KEY + "user1"));
+        FlagStorePersister.getInstance().flushAll();
+
+        assertTrue(createFlagStore("user1").getAllFlags().isEmpty());
+    }
+}
@@ -5,16 +5,22 @@ import android.app.Application;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.launchdarkly.sdk.LDValue;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(AndroidJUnit4.class)
 public class SharedPrefsFlagStoreTest extends FlagStoreTest {
@@ -93,4 +99,102 @@ public class SharedPrefsFlagStoreTest extends FlagStoreTest {
         assertEquals(flagStore.getFlag(withFlagVersion.getKey()).getVersionForEvents(), 13, 0);
         assertEquals(flagStore.getFlag(withOnlyVersion.getKey()).getVersionForEvents(), 12, 0);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getFlagIsServedFromMemory() {
+        final Flag key1 = new FlagBuilder("key1").version(12).build();
+
+        final SharedPrefsFlagStore flagStore = new SharedPrefsFlagStore(testApplication, "abc");
+        flagStore.applyFlagUpdate(key1);
+
+        assertSame(flagStore.getFlag(key1.getKey()), flagStore.getFlag(key1.getKey()));
+        // A store instance created later decodes the persisted flags once
+        final SharedPrefsFlagStore reloaded = new SharedPrefsFlagStore(testApplication, "abc");
+        assertEquals(12, reloaded.getFlag(key1.getKey()).getVersion(), 0);
+        assertSame(reloaded.getFlag(key1.getKey()), reloaded.getFlag(key1.getKey()));
+    }
+
+    @Test
+    public void servesFlagsFromSnapshotUntilLoaded() {
+        final Flag key1 = new FlagBuilder("key1").value(LDValue.of("a")).version(12).build();
+        final Flag key2 = new FlagBuilder("key2").value(LDValue.of(3)).version(4).build();
+
+        final SharedPrefsFlagStore flagStore = new SharedPrefsFlagStore(testApplication, "abc");
+        flagStore.clearAndApplyFlagUpdates(Arrays.<FlagUpdate>asList(key1, key2));
+        FlagStorePersister.getInstance().checkpointAll();
+
+        final SharedPrefsFlagStore reloaded = new SharedPrefsFlagStore(testApplication, "abc");
+        reloaded.openSnapshot();
+        assertEquals(LDValue.of("a"), reloaded.getFlag("key1").getValue());
+        assertEquals(4, reloaded.getFlag("key2").getVersion(), 0);
+        assertSame(reloaded.getFlag("key1"), reloaded.getFlag("key1"));
+        assertTrue(reloaded.containsKey("key2"));
+        assertFalse(reloaded.containsKey("missing"));
+        Assert.assertNull(reloaded.getFlag("missing"));
+
+        // Updates load the full store, and the snapshot is refreshed at the next checkpoint
+        reloaded.applyFlagUpdate(new FlagBuilder("key1").value(LDValue.of("b")).version(13).build());
+        assertEquals(LDValue.of("b"), reloaded.getFlag("key1").getValue());
+        FlagStorePersister.getInstance().checkpointAll();
+        final SharedPrefsFlagStore reopened = new SharedPrefsFlagStore(testApplication, "abc");
+        reopened.openSnapshot();
+        assertEquals(LDValue.of("b"), reopened.getFlag("key1").getValue());
+        assertEquals(2, reopened.getAllFlags().size());
+    }
+
+    @Test
+    public void updatesDoNotDecodeLoadedFlags() {
+        final Flag key1 = new FlagBuilder("key1").value(LDValue.of("a")).version(12).build();
+        final Flag key2 = new FlagBuilder("key2").value(LDValue.of(3)).version(4).build();
+
+        final SharedPrefsFlagStore flagStore = new SharedPrefsFlagStore(testApplication, "abc");
+        flagStore.clearAndApplyFlagUpdates(Arrays.<FlagUpdate>asList(key1, key2));
+        FlagStorePersister.getInstance().flushAll();
+
+        final SharedPrefsFlagStore reloaded = new SharedPrefsFlagStore(testApplication, "abc");
+        reloaded.applyFlagUpdates(Collections.<FlagUpdate>singletonList(
+                new FlagBuilder("key3").value(LDValue.of(true)).version(1).build()));
+        FlagStorePersister.getInstance().checkpointAll();
+
+        assertFalse(reloaded.getFlag("key1").isDecoded());
+        assertFalse(reloaded.getFlag("key2").isDecoded());
+
+        // Flags written from their retained JSON read back intact
+        final SharedPrefsFlagStore reopened = new SharedPrefsFlagStore(testApplication, "abc");
+        reopened.openSnapshot();
+        assertFalse(reopened.getFlag("key1").isDecoded());
+        assertEquals(LDValue.of("a"), reopened.getFlag("key1").getValue());
+        assertEquals(4, reopened.getFlag("key2").getVersion(), 0);
+    }
+
+    @Test
+    public void snapshotIsOnlyWrittenAtCheckpoints() {
+        final File snapshotFile = new File(testApplication.getFilesDir(),
+                SharedPrefsFlagStore.prefsKeyForIdentifier("abc") + ".snapshot");
+        final SharedPrefsFlagStore flagStore = new SharedPrefsFlagStore(testApplication, "abc");
+        flagStore.applyFlagUpdate(new FlagBuilder("key1").version(1).build());
+        FlagStorePersister.getInstance().checkpointAll();
+        assertTrue(snapshotFile.exists());
+
+        // A write removes the stale snapshot without writing a new one
+        flagStore.applyFlagUpdate(new FlagBuilder("key1").version(2).build());
+        FlagStorePersister.getInstance().flushAll();
+        assertFalse(snapshotFile.exists());
+
+        FlagStorePersister.getInstance().checkpointAll();
+        final SharedPrefsFlagStore reloaded = new SharedPrefsFlagStore(testApplication, "abc");
+        reloaded.openSnapshot();
+        assertEquals(2, reloaded.getFlag("key1").getVersion(), 0);
+    }
+
+    @Test
+    public void deleteRemovesSnapshot() {
+        final SharedPrefsFlagStore flagStore = new SharedPrefsFlagStore(testApplication, "abc");
+        flagStore.applyFlagUpdate(new FlagBuilder("key1").version(1).build());
+        flagStore.delete();
+
+        final SharedPrefsFlagStore reloaded = new SharedPrefsFlagStore(testApplication, "abc");
+        reloaded.openSnapshot();
+        Assert.assertNull(reloaded.getFlag("key1"));
+    }
+}
@@ -1,5 +1,7 @@
 package com.launchdarkly.sdk.android;
 
+import android.app.Application;
+
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
@@ -13,6 +15,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -105,6 +108,43 @@ public class SharedPrefsSummaryEventStoreTest {
         assertNull(features.get("jsonFlag").defaultValue);
     }
 
+    @Test
+    public void batchedEvaluationsUpdateCounters() {
+        summaryEventStore.clear();
+        summaryEventStore.addOrUpdateEvent("boolFlag", LDValue.of(true), LDValue.of(false), 1, 0);
+        summaryEventStore.addOrUpdateEvents(Arrays.asList(
+                new SummaryEventStore.Evaluation("boolFlag", LDValue.of(true), LDValue.of(false), 1, 0),
+                new SummaryEventStore.Evaluation("intFlag", LDValue.of(3), LDValue.of(1), 2, 1)));
+
+        SummaryEvent summaryEvent = summaryEventStore.getSummaryEvent();
+        assertNotNull(summaryEvent.startDate);
+        Map<String, SummaryEventStore.FlagCounters> features = summaryEvent.features;
+        assertEquals(2, features.size());
+        assertEquals(2, features.get("boolFlag").counters.get(0).count);
+        assertEquals(1, features.get("intFlag").counters.get(0).count);
+        assertEquals(1, features.get("intFlag").defaultValue.intValue());
+    }
+
+    @Test
+    public void countersArePersistedOnlyOnCheckpoint() {
+        Application application = ApplicationProvider.getApplicationContext();
+        SharedPrefsSummaryEventStore store = new SharedPrefsSummaryEventStore(application, "LaunchDarkly-test-summaryevents");
+        store.clear();
+
+        store.addOrUpdateEvent("boolFlag", LDValue.of(true), LDValue.of(false), 1, 0);
+        store.addOrUpdateEvent("boolFlag", LDValue.of(true), LDValue.of(false), 1, 0);
+        assertNull(new SharedPrefsSummaryEventStore(application, "LaunchDarkly-test-summaryevents").getSummaryEvent());
+
+        store.checkpoint();
+        SummaryEvent reloaded = new SharedPrefsSummaryEventStore(application, "LaunchDarkly-test-summaryevents").getSummaryEvent();
+        assertNotNull(reloaded);
+        assertEquals(2, reloaded.features.get("boolFlag").counters.get(0).count);
+        assertEquals(store.getSummaryEvent().startDate, reloaded.startDate);
+
+        store.clear();
+        assertNull(new SharedPrefsSummaryEventStore(application, "LaunchDarkly-test-summaryevents").getSummaryEvent());
+    }
+
     @Test
     public void sharedPreferencesAreCleared() {
         assertTrue(ldClient.isInitialized());
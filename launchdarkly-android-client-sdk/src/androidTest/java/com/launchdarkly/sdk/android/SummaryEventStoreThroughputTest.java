@@ -0,0 +1,125 @@
+package com.launchdarkly.sdk.android;
+
+import android.app.Application;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Measures how summary counting throughput scales with the number of threads evaluating flags,
+ * comparing the striped store with a single stripe, which behaves like a single shared lock.
+ * Throughput is logged rather than asserted, as it depends on the device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SummaryEventStoreThroughputTest {
+
+    private static final int EVALUATIONS_PER_THREAD = 200000;
+    private static final int FLAG_COUNT = 20;
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+
+    @Rule
+    public TimberLoggingRule timberLoggingRule = new TimberLoggingRule();
+
+    private final Application application = ApplicationProvider.getApplicationContext();
+    private final String[] flagKeys = new String[FLAG_COUNT];
+    private final LDValue[] values = new LDValue[FLAG_COUNT];
+
+    public SummaryEventStoreThroughputTest() {
+        for (int i = 0; i < FLAG_COUNT; i++) {
+            flagKeys[i] = "flag" + i;
+            values[i] = LDValue.of(i);
+        }
+    }
+
+    @Test
+    public void concurrentCountsAreMergedExactly() throws InterruptedException {
+        SharedPrefsSummaryEventStore store = createStore(8);
+        run(store, 8, 10000);
+
+        SummaryEvent summaryEvent = store.getSummaryEventAndClear();
+        assertEquals(FLAG_COUNT, summaryEvent.features.size());
+        long total = 0;
+        for (SummaryEventStore.FlagCounters flagCounters : summaryEvent.features.values()) {
+            assertEquals(1, flagCounters.counters.size());
+            total += flagCounters.counters.get(0).count;
+        }
+        assertEquals(8 * 10000, total);
+        assertNull(store.getSummaryEventAndClear());
+    }
+
+    @Test
+    public void throughputScalesWithEvaluatingThreads() throws InterruptedException {
+        for (int threads : THREAD_COUNTS) {
+            double singleLock = measure(createStore(1), threads);
+            double striped = measure(createStore(0), threads);
+            LDConfig.LOG.i(String.format(Locale.US,
+                    "%d thread(s): single lock %.0f evaluations/s, striped %.0f evaluations/s (%.2fx)",
+                    threads, singleLock, striped, striped / singleLock));
+        }
+    }
+
+    /**
+     * Creates a store with the given number of stripes, or the default number if zero.
+     */
+    private SharedPrefsSummaryEventStore createStore(int stripes) {
+        String name = "LaunchDarkly-throughputTest-summaryevents";
+        SharedPrefsSummaryEventStore store = stripes == 0
+                ? new SharedPrefsSummaryEventStore(application, name)
+                : new SharedPrefsSummaryEventStore(application, name, stripes);
+        store.clear();
+        return store;
+    }
+
+    private double measure(SharedPrefsSummaryEventStore store, int threads) throws InterruptedException {
+        // Warm up so that every thread has registered every flag in its stripe
+        run(store, threads, 1000);
+        long start = System.nanoTime();
+        run(store, threads, EVALUATIONS_PER_THREAD);
+        long elapsed = System.nanoTime() - start;
+        store.clear();
+        return (double) threads * EVALUATIONS_PER_THREAD * 1e9 / elapsed;
+    }
+
+    private void run(final SummaryEventStore store, int threads, final int evaluations) throws InterruptedException {
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch go = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < evaluations; i++) {
+                    int flag = i % FLAG_COUNT;
+                    if (!store.updateExistingEvent(flagKeys[flag], values[flag], 1, 0)) {
+                        store.addOrUpdateEvent(flagKeys[flag], values[flag], LDValue.ofNull(), 1, 0);
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        ready.await();
+        go.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+}
@@ -38,6 +38,8 @@ public class TestUtil {
                     return context.deserialize(json, IdentifyEvent.class);
                 case "alias":
                     return context.deserialize(json, AliasEvent.class);
+                case "index":
+                    return context.deserialize(json, IndexEvent.class);
             }
             return null;
         }
@@ -0,0 +1,177 @@
+package com.launchdarkly.sdk.android;
+
+import android.app.Application;
+import android.util.AtomicFile;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link FlagStore} that persists all flags for a user in a single binary file, written
+ * atomically on each update. Loading the store is a single file read rather than one JSON parse
+ * per SharedPreferences entry.
+ * <p>
+ * The file holds a header (magic number, format version and flag count) followed by one
+ * length-prefixed record per flag, encoded by {@link FlagRecordCodec}. If no file exists for the
+ * identifier, flags are migrated from the SharedPreferences store used by earlier SDK versions
+ * before the store is loaded.
+ * <p>
+ * No separate snapshot is kept, as loading the file is already a single read, and writing a
+ * snapshot as well would double the cost of each flush.
+ */
+class BinaryFileFlagStore extends CachedFlagStore {
+
+    static final int MAGIC = 0x4C44464C; // "LDFL"
+    static final int FORMAT_VERSION = 1;
+
+    private static final String FILE_BASE_NAME = "LaunchDarkly-";
+
+    private final Application application;
+    private final String identifier;
+    private final AtomicFile atomicFile;
+    private final Object migrationLock = new Object();
+
+    BinaryFileFlagStore(@NonNull Application application, @NonNull String identifier) {
+        super(null);
+        this.application = application;
+        this.identifier = identifier;
+        this.atomicFile = new AtomicFile(fileForIdentifier(application, identifier));
+    }
+
+    static File fileForIdentifier(@NonNull Application application, @NonNull String identifier) {
+        return new File(application.getFilesDir(), FILE_BASE_NAME + identifier + "-flags.bin");
+    }
+
+    @NonNull
+    @Override
+    Map<String, Flag> loadFlags() {
+        byte[] contents;
+        try {
+            contents = atomicFile.readFully();
+        } catch (FileNotFoundException e) {
+            return new HashMap<>();
+        } catch (IOException e) {
+            LDConfig.LOG.w(e, "Unable to read flag store file for %s", identifier);
+            return new HashMap<>();
+        }
+        try {
+            return decode(ByteBuffer.wrap(contents));
+        } catch (IOException e) {
+            LDConfig.LOG.w(e, "Discarding corrupt flag store file for %s", identifier);
+            atomicFile.delete();
+            return new HashMap<>();
+        }
+    }
+
+    @Override
+    void persistFlags(@NonNull Map<String, Flag> allFlags,
+                      @NonNull Map<String, Flag> updatedFlags,
+                      @NonNull Set<String> deletedKeys,
+                      boolean replaceAll) {
+        // The whole file is rewritten on each change, so only the final state matters.
+        writeFile(allFlags.values());
+    }
+
+    @Override
+    void deleteBackingStore() {
+        LDConfig.LOG.i("Deleting flag store file:%s", atomicFile.getBaseFile().getAbsolutePath());
+        atomicFile.delete();
+        // Also remove any SharedPreferences data that was never migrated
+        //noinspection ResultOfMethodCallIgnored
+        SharedPrefsFlagStore.prefsFileForIdentifier(application, identifier).delete();
+    }
+
+    private boolean writeFile(@NonNull Collection<Flag> flags) {
+        FileOutputStream fileOutputStream = null;
+        try {
+            fileOutputStream = atomicFile.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+            encode(out, flags);
+            out.flush();
+            atomicFile.finishWrite(fileOutputStream);
+            return true;
+        } catch (IOException e) {
+            LDConfig.LOG.e(e, "Unable to write flag store file for %s", identifier);
+            if (fileOutputStream != null) {
+                atomicFile.failWrite(fileOutputStream);
+            }
+            return false;
+        }
+    }
+
+    @Override
+    void beforeLoad() {
+        synchronized (migrationLock) {
+            if (atomicFile.getBaseFile().exists()) {
+                return;
+            }
+            // The file is only written once the store has been loaded or cleared, after which it
+            // exists, so this does not overwrite newer flags
+            SharedPrefsFlagStore legacyStore = new SharedPrefsFlagStore(application, identifier);
+            Collection<Flag> flags = legacyStore.getAllFlags();
+            if (!flags.isEmpty() && writeFile(flags)) {
+                LDConfig.LOG.i("Migrated %d flags from SharedPreferences for %s", flags.size(), identifier);
+                legacyStore.delete();
+            }
+        }
+    }
+
+    static void encode(@NonNull DataOutputStream out, @NonNull Collection<Flag> flags) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(flags.size());
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream recordOut = new DataOutputStream(record);
+        for (Flag flag : flags) {
+            record.reset();
+            FlagRecordCodec.writeFlag(recordOut, flag);
+            recordOut.flush();
+            out.writeInt(record.size());
+            record.writeTo(out);
+        }
+    }
+
+    @NonNull
+    static Map<String, Flag> decode(@NonNull ByteBuffer in) throws IOException {
+        if (in.remaining() < 12 || in.getInt() != MAGIC) {
+            throw new IOException("Not a flag store file");
+        }
+        int formatVersion = in.getInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported flag store format version " + formatVersion);
+        }
+        int count = in.getInt();
+        if (count < 0) {
+            throw new IOException("Invalid flag count " + count);
+        }
+        Map<String, Flag> flags = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            if (in.remaining() < 4) {
+                throw new IOException("Truncated flag store file");
+            }
+            int length = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+                throw new IOException("Invalid flag record length " + length);
+            }
+            int end = in.position() + length;
+            ByteBuffer record = in.duplicate();
+            record.limit(end);
+            Flag flag = FlagRecordCodec.readFlag(record);
+            flags.put(flag.getKey(), flag);
+            in.position(end);
+        }
+        return flags;
+    }
+}
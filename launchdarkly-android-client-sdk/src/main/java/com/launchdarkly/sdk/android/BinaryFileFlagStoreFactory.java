@@ -0,0 +1,19 @@
+package com.launchdarkly.sdk.android;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+
+class BinaryFileFlagStoreFactory implements FlagStoreFactory {
+
+    private final Application application;
+
+    BinaryFileFlagStoreFactory(@NonNull Application application) {
+        this.application = application;
+    }
+
+    @Override
+    public FlagStore createFlagStore(@NonNull String identifier) {
+        return new BinaryFileFlagStore(application, identifier);
+    }
+}
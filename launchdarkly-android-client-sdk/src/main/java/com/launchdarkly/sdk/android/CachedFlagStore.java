@@ -0,0 +1,452 @@
+package com.launchdarkly.sdk.android;
+
+import android.util.AtomicFile;
+import android.util.Pair;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Base class for {@link FlagStore} implementations that hold the decoded flags in memory and write
+ * changes through to a persistent backing store. Reads are served by a lock-free map lookup, and
+ * subclasses are only responsible for loading and persisting flags.
+ * <p>
+ * Changes are applied to memory immediately and written behind by {@link FlagStorePersister},
+ * which coalesces bursts of updates into a single write of the keys that changed.
+ * <p>
+ * A {@link FlagSnapshot} of the store is written at checkpoints, when the application goes to the
+ * background or the client is closed, rather than on each write; a write only removes the snapshot
+ * it makes stale. Until the store is fully loaded, {@link #openSnapshot()} allows lookups to be
+ * served from the memory-mapped snapshot, decoding only the flags that are requested.
+ */
+abstract class CachedFlagStore implements FlagStore {
+
+    private WeakReference<StoreUpdatedListener> listenerWeakReference = new WeakReference<>(null);
+    // Decoded flags, loaded from the backing store on first access. Updates replace or modify this
+    // map under the store's lock, while reads are lock-free.
+    private volatile Map<String, Flag> flags;
+
+    @Nullable
+    private final AtomicFile snapshotFile;
+    // Memory-mapped snapshot used for lookups until the flags are loaded, along with the flags that
+    // have been decoded from it so far.
+    private volatile FlagSnapshot snapshot;
+    private final Map<String, Flag> snapshotFlags = new ConcurrentHashMap<>();
+    // Whether the snapshot file is missing or older than the backing store, guarded by the lock
+    private boolean snapshotStale;
+
+    // Changes applied to memory but not yet written, guarded by the store's lock
+    private final Map<String, Flag> pendingUpdatedFlags = new HashMap<>();
+    private final Set<String> pendingDeletedKeys = new HashSet<>();
+    private boolean pendingReplaceAll;
+    private int pendingUpdateCount;
+
+    CachedFlagStore(@Nullable File snapshotFile) {
+        this.snapshotFile = snapshotFile == null ? null : new AtomicFile(snapshotFile);
+    }
+
+    /**
+     * Load all flags from the backing store. Called at most once, on first access to the store.
+     *
+     * @return The persisted flags keyed by flag key.
+     */
+    @NonNull
+    abstract Map<String, Flag> loadFlags();
+
+    /**
+     * Prepare the backing store before flags are first loaded, such as by migrating flags stored
+     * by earlier SDK versions. Called without holding the store's lock, so that other stores can
+     * be read and flushed, and may be called by more than one thread if they load the store at the
+     * same time.
+     */
+    void beforeLoad() {
+    }
+
+    /**
+     * Write a set of changes through to the backing store. Always called while holding the store's
+     * lock, from {@link #flush()}.
+     *
+     * @param allFlags     All flags in the store after the changes have been applied.
+     * @param updatedFlags Flags that were created or updated, keyed by flag key.
+     * @param deletedKeys  Keys of flags that were removed.
+     * @param replaceAll   Whether the backing store should be cleared before applying the changes,
+     *                     in which case updatedFlags contains every flag in the store.
+     */
+    abstract void persistFlags(@NonNull Map<String, Flag> allFlags,
+                               @NonNull Map<String, Flag> updatedFlags,
+                               @NonNull Set<String> deletedKeys,
+                               boolean replaceAll);
+
+    /**
+     * Delete the backing store entirely.
+     */
+    abstract void deleteBackingStore();
+
+    /**
+     * Returns the in-memory flags, loading them from the backing store on first access. The first
+     * call must not be made while holding the store's lock, as pending changes from other store
+     * instances are flushed before loading.
+     */
+    @NonNull
+    final Map<String, Flag> flags() {
+        Map<String, Flag> current = flags;
+        if (current == null) {
+            // Another instance for the same backing store may have changes that are not written yet
+            FlagStorePersister.getInstance().flushAll();
+            beforeLoad();
+            synchronized (this) {
+                current = flags;
+                if (current == null) {
+                    current = new ConcurrentHashMap<>(loadFlags());
+                    flags = current;
+                    snapshot = null;
+                    snapshotFlags.clear();
+                }
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public void openSnapshot() {
+        if (flags != null || snapshotFile == null) {
+            return;
+        }
+        // Make sure the snapshot reflects changes made through other instances
+        FlagStorePersister.getInstance().flushAll();
+        synchronized (this) {
+            if (flags == null && snapshot == null) {
+                snapshot = FlagSnapshot.open(snapshotFile);
+            }
+        }
+    }
+
+    /**
+     * Records changes that have been applied to memory, to be written by the next {@link #flush()}.
+     * Must be called while holding the store's lock.
+     */
+    private void persist(@NonNull Map<String, Flag> updatedFlags,
+                         @NonNull Set<String> deletedKeys,
+                         boolean replaceAll) {
+        if (replaceAll) {
+            pendingUpdatedFlags.clear();
+            pendingDeletedKeys.clear();
+            pendingReplaceAll = true;
+        }
+        for (String deletedKey : deletedKeys) {
+            pendingUpdatedFlags.remove(deletedKey);
+            pendingDeletedKeys.add(deletedKey);
+        }
+        for (Map.Entry<String, Flag> entry : updatedFlags.entrySet()) {
+            pendingDeletedKeys.remove(entry.getKey());
+            pendingUpdatedFlags.put(entry.getKey(), entry.getValue());
+        }
+        pendingUpdateCount++;
+        FlagStorePersister.getInstance().markDirty(this, pendingUpdateCount);
+    }
+
+    /**
+     * Synchronously writes any changes that have not been persisted yet.
+     */
+    synchronized void flush() {
+        if (pendingUpdateCount == 0) {
+            return;
+        }
+        Map<String, Flag> allFlags = flags();
+        Map<String, Flag> updatedFlags = new HashMap<>(pendingUpdatedFlags);
+        Set<String> deletedKeys = new HashSet<>(pendingDeletedKeys);
+        boolean replaceAll = pendingReplaceAll;
+        pendingUpdatedFlags.clear();
+        pendingDeletedKeys.clear();
+        pendingReplaceAll = false;
+        pendingUpdateCount = 0;
+
+        if (snapshotFile != null && !snapshotStale) {
+            // Remove the old snapshot first, so that a failure part way through leaves no snapshot
+            // rather than a stale one. A new one is written at the next checkpoint.
+            snapshotFile.delete();
+            snapshotStale = true;
+            FlagStorePersister.getInstance().markSnapshotStale(this);
+        }
+        persistFlags(allFlags, updatedFlags, deletedKeys, replaceAll);
+    }
+
+    /**
+     * Writes any pending changes, then rewrites the snapshot if writes have made it stale.
+     */
+    synchronized void checkpoint() {
+        flush();
+        Map<String, Flag> current = flags;
+        if (snapshotStale && current != null) {
+            snapshotStale = !FlagSnapshot.write(snapshotFile, current.values());
+        }
+    }
+
+    @Override
+    public void delete() {
+        // Make sure no other instance writes this store's flags back after it is deleted
+        FlagStorePersister.getInstance().flushAll();
+        synchronized (this) {
+            pendingUpdatedFlags.clear();
+            pendingDeletedKeys.clear();
+            pendingReplaceAll = false;
+            pendingUpdateCount = 0;
+            if (snapshotFile != null) {
+                snapshotFile.delete();
+            }
+            snapshotStale = false;
+            snapshot = null;
+            snapshotFlags.clear();
+            deleteBackingStore();
+            flags = new ConcurrentHashMap<>();
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        Map<String, Flag> cleared = new ConcurrentHashMap<>();
+        flags = cleared;
+        snapshot = null;
+        snapshotFlags.clear();
+        persist(Collections.<String, Flag>emptyMap(), Collections.<String>emptySet(), true);
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        if (key == null) {
+            return false;
+        }
+        FlagSnapshot currentSnapshot = snapshot;
+        if (flags == null && currentSnapshot != null) {
+            return currentSnapshot.containsKey(key);
+        }
+        return flags().containsKey(key);
+    }
+
+    @Nullable
+    @Override
+    public Flag getFlag(String flagKey) {
+        if (flagKey == null) {
+            return null;
+        }
+        FlagSnapshot currentSnapshot = snapshot;
+        if (flags == null && currentSnapshot != null) {
+            Flag flag = snapshotFlags.get(flagKey);
+            if (flag == null) {
+                flag = currentSnapshot.getFlag(flagKey);
+                if (flag != null) {
+                    snapshotFlags.put(flagKey, flag);
+                }
+            }
+            return flag;
+        }
+        return flags().get(flagKey);
+    }
+
+    @NonNull
+    @Override
+    public Map<String, Flag> getFlags(@NonNull Collection<String> flagKeys) {
+        Map<String, Flag> result = new HashMap<>();
+        FlagSnapshot currentSnapshot = snapshot;
+        if (flags == null && currentSnapshot != null) {
+            // The snapshot is immutable, so reading it key by key is consistent
+            for (String flagKey : flagKeys) {
+                Flag flag = getFlag(flagKey);
+                if (flag != null) {
+                    result.put(flagKey, flag);
+                }
+            }
+            return result;
+        }
+        flags();
+        synchronized (this) {
+            Map<String, Flag> current = flags();
+            for (String flagKey : flagKeys) {
+                Flag flag = flagKey == null ? null : current.get(flagKey);
+                if (flag != null) {
+                    result.put(flagKey, flag);
+                }
+            }
+        }
+        return result;
+    }
+
+    private Pair<String, FlagStoreUpdateType> applyFlagUpdateNoPersist(@NonNull Map<String, Flag> current,
+                                                                       @NonNull FlagUpdate flagUpdate,
+                                                                       @NonNull Map<String, Flag> updatedFlags,
+                                                                       @NonNull Set<String> deletedKeys) {
+        String flagKey = flagUpdate.flagToUpdate();
+        if (flagKey == null) {
+            return null;
+        }
+        Flag flag = current.get(flagKey);
+        Flag newFlag = flagUpdate.updateFlag(flag);
+        if (flag != null && newFlag == null) {
+            current.remove(flagKey);
+            updatedFlags.remove(flagKey);
+            deletedKeys.add(flagKey);
+            return new Pair<>(flagKey, FlagStoreUpdateType.FLAG_DELETED);
+        } else if (flag == null && newFlag != null) {
+            current.put(flagKey, newFlag);
+            updatedFlags.put(flagKey, newFlag);
+            deletedKeys.remove(flagKey);
+            return new Pair<>(flagKey, FlagStoreUpdateType.FLAG_CREATED);
+        } else if (flag != newFlag) {
+            current.put(flagKey, newFlag);
+            updatedFlags.put(flagKey, newFlag);
+            return new Pair<>(flagKey, FlagStoreUpdateType.FLAG_UPDATED);
+        }
+        return null;
+    }
+
+    @Override
+    public void applyFlagUpdate(FlagUpdate flagUpdate) {
+        Pair<String, FlagStoreUpdateType> update;
+        flags();
+        synchronized (this) {
+            Map<String, Flag> current = flags();
+            Map<String, Flag> updatedFlags = new HashMap<>();
+            Set<String> deletedKeys = new HashSet<>();
+            update = applyFlagUpdateNoPersist(current, flagUpdate, updatedFlags, deletedKeys);
+            if (update != null) {
+                persist(updatedFlags, deletedKeys, false);
+            }
+        }
+        StoreUpdatedListener storeUpdatedListener = listenerWeakReference.get();
+        if (update != null && storeUpdatedListener != null) {
+            storeUpdatedListener.onStoreUpdate(Collections.singletonList(new Pair<>(update.first, update.second)));
+        }
+    }
+
+    private void informListenerOfUpdateList(List<Pair<String, FlagStoreUpdateType>> updates) {
+        StoreUpdatedListener storeUpdatedListener = listenerWeakReference.get();
+        if (storeUpdatedListener != null) {
+            storeUpdatedListener.onStoreUpdate(updates);
+        }
+    }
+
+    @Override
+    public void applyFlagUpdates(List<? extends FlagUpdate> flagUpdates) {
+        ArrayList<Pair<String, FlagStoreUpdateType>> updates = new ArrayList<>();
+        flags();
+        synchronized (this) {
+            Map<String, Flag> current = flags();
+            Map<String, Flag> updatedFlags = new HashMap<>();
+            Set<String> deletedKeys = new HashSet<>();
+            for (FlagUpdate flagUpdate : flagUpdates) {
+                Pair<String, FlagStoreUpdateType> update = applyFlagUpdateNoPersist(current, flagUpdate, updatedFlags, deletedKeys);
+                if (update != null) {
+                    updates.add(update);
+                }
+            }
+            if (!updates.isEmpty()) {
+                persist(updatedFlags, deletedKeys, false);
+            }
+        }
+        informListenerOfUpdateList(updates);
+    }
+
+    @Override
+    public void clearAndApplyFlagUpdates(List<? extends FlagUpdate> newFlags) {
+        ArrayList<Pair<String, FlagStoreUpdateType>> updates = new ArrayList<>();
+        flags();
+        synchronized (this) {
+            Map<String, Flag> cachedFlags = flags();
+            Map<String, Flag> replacementFlags = new ConcurrentHashMap<>();
+            // Only flags that differ from the cached ones are written to the backing store
+            Map<String, Flag> changedFlags = new HashMap<>();
+            // here we explicitly copy the keySet()
+            // this is because modifying a keySet() also modifies the underlying map
+            // and we modify this further up to track changes
+            Set<String> clearedKeys = new HashSet<>(cachedFlags.keySet());
+            for (FlagUpdate flagUpdate : newFlags) {
+                String flagKey = flagUpdate.flagToUpdate();
+                if (flagKey == null) {
+                    continue;
+                }
+                Flag newFlag = flagUpdate.updateFlag(null);
+                if (newFlag != null) {
+                    // track that this key has not been deleted
+                    clearedKeys.remove(flagKey);
+
+                    Flag cachedFlag = cachedFlags.get(flagKey);
+
+                    if (cachedFlag != null) {
+                        if (isUnchanged(cachedFlag, newFlag)) {
+                            // keep the cached flag, which matches what is persisted
+                            replacementFlags.put(flagKey, cachedFlag);
+                            continue;
+                        }
+                        replacementFlags.put(flagKey, newFlag);
+                        changedFlags.put(flagKey, newFlag);
+
+                        Integer cv = cachedFlag.getVersion();
+                        Integer nv = newFlag.getVersion();
+
+                        if (!Objects.equals(cv, nv)) {
+                            // only track updates if the versions of the flag has changed
+                            updates.add(new Pair<>(flagKey, FlagStoreUpdateType.FLAG_UPDATED));
+                        }
+                        continue;
+                    }
+
+                    replacementFlags.put(flagKey, newFlag);
+                    changedFlags.put(flagKey, newFlag);
+                    // Flag not present in cached flags so mark it as newly created
+                    updates.add(new Pair<>(flagKey, FlagStoreUpdateType.FLAG_CREATED));
+                }
+            }
+            flags = replacementFlags;
+            if (!changedFlags.isEmpty() || !clearedKeys.isEmpty()) {
+                persist(changedFlags, clearedKeys, false);
+            }
+            for (String clearedKey : clearedKeys) {
+                updates.add(new Pair<>(clearedKey, FlagStoreUpdateType.FLAG_DELETED));
+            }
+        }
+        informListenerOfUpdateList(updates);
+    }
+
+    /**
+     * Whether an incoming flag can be treated as identical to the cached one. The version changes
+     * whenever the flag's value or reason does, so only the scalar fields are compared and the
+     * value is never decoded. Flags without a version are always treated as changed.
+     */
+    private static boolean isUnchanged(@NonNull Flag cachedFlag, @NonNull Flag newFlag) {
+        return cachedFlag.getVersion() != null &&
+                cachedFlag.getVersion().equals(newFlag.getVersion()) &&
+                Objects.equals(cachedFlag.getFlagVersion(), newFlag.getFlagVersion()) &&
+                Objects.equals(cachedFlag.getVariation(), newFlag.getVariation()) &&
+                cachedFlag.getTrackEvents() == newFlag.getTrackEvents() &&
+                cachedFlag.isTrackReason() == newFlag.isTrackReason() &&
+                Objects.equals(cachedFlag.getDebugEventsUntilDate(), newFlag.getDebugEventsUntilDate());
+    }
+
+    @Override
+    public Collection<Flag> getAllFlags() {
+        return new ArrayList<>(flags().values());
+    }
+
+    @Override
+    public void registerOnStoreUpdatedListener(StoreUpdatedListener storeUpdatedListener) {
+        listenerWeakReference = new WeakReference<>(storeUpdatedListener);
+    }
+
+    @Override
+    public void unregisterOnStoreUpdatedListener() {
+        listenerWeakReference.clear();
+    }
+}
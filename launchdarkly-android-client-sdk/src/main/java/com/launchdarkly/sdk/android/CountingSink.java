@@ -0,0 +1,30 @@
+package com.launchdarkly.sdk.android;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+import okio.Buffer;
+import okio.ForwardingSink;
+import okio.Sink;
+
+/**
+ * A sink that counts the bytes written through it.
+ */
+final class CountingSink extends ForwardingSink {
+    private long count;
+
+    CountingSink(@NonNull Sink delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public void write(@NonNull Buffer source, long byteCount) throws IOException {
+        super.write(source, byteCount);
+        count += byteCount;
+    }
+
+    long getCount() {
+        return count;
+    }
+}
@@ -5,30 +5,43 @@ import android.content.Context;
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 
+import com.google.gson.Gson;
+import com.launchdarkly.sdk.LDUser;
+
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
-import okhttp3.RequestBody;
 import okhttp3.Response;
 
-import static com.launchdarkly.sdk.android.LDConfig.JSON;
 import static com.launchdarkly.sdk.android.LDUtil.isClientConnected;
 import static com.launchdarkly.sdk.android.LDUtil.isHttpErrorRecoverable;
 
@@ -38,13 +51,42 @@ class DefaultEventProcessor implements EventProcessor, Closeable {
         put("X-LaunchDarkly-Event-Schema", "3");
     }};
 
-    private final BlockingQueue<Event> queue;
+    // When adaptive flushing is enabled and there is nothing to send, the flush interval is
+    // doubled after each flush up to this multiple of the configured interval
+    static final int MAX_IDLE_FLUSH_INTERVAL_MULTIPLIER = 8;
+
+    // Delays between attempts to deliver a batch double from the base delay up to the maximum.
+    // Longer delays requested by the server with Retry-After are respected up to a limit.
+    static final long BASE_RETRY_DELAY_MILLIS = 1_000;
+    static final long MAX_RETRY_DELAY_MILLIS = 300_000; // 5 minutes
+    static final long MAX_RETRY_AFTER_MILLIS = 3_600_000; // 1 hour
+
+    static final long PERSIST_THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    private final EventBuffer queue;
+    private final EventFileQueue fileQueue;
+    // Whether the file queue only holds events that did not fit in memory, rather than all events
+    private final boolean spillToDisk;
+    // When all events are kept on disk, events are recorded in memory and written to the file
+    // queue in batches on this executor, so that threads recording events do not write files
+    private final ThreadPoolExecutor persistExecutor;
+    private final AtomicBoolean persistPending = new AtomicBoolean();
+    private final Object persistLock = new Object();
+    private final FeatureEventDeduplicator deduplicator;
+    private final MetricEventAggregator metricAggregator;
     private final Consumer consumer;
     private final OkHttpClient client;
     private final Context context;
     private final LDConfig config;
     private final String environmentName;
-    private ScheduledExecutorService scheduler;
+    private volatile ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> scheduledFlush;
+    private long flushIntervalMillis;
+    private final int highWaterMark;
+    private final AtomicInteger eventsSinceFlush = new AtomicInteger();
+    private final AtomicBoolean earlyFlushPending = new AtomicBoolean();
+    // Completes when the manual flush that has been requested but not yet started is done
+    private LDAwaitFuture<Void> pendingFlush;
     private final SummaryEventStore summaryEventStore;
     private long currentTimeMs = System.currentTimeMillis();
     private DiagnosticStore diagnosticStore;
@@ -54,16 +96,50 @@ class DefaultEventProcessor implements EventProcessor, Closeable {
         this.context = context;
         this.config = config;
         this.environmentName = environmentName;
-        this.queue = new ArrayBlockingQueue<>(config.getEventsCapacity());
+        this.spillToDisk = config.getEventsOverflowPolicy() == EventOverflowPolicy.SPILL_TO_DISK;
+        if (config.getEventsCapacityBytes() == 0
+                && (config.getEventsOverflowPolicy() == EventOverflowPolicy.DROP_NEWEST || spillToDisk)) {
+            // Rejecting the newest event needs no lock
+            this.queue = new EventRingBuffer(config.getEventsCapacity());
+        } else {
+            this.queue = new EventQueue(config.getFilteredEventGson(), config.getEventsCapacity(),
+                    config.getEventsCapacityBytes(), config.getEventsOverflowPolicy());
+        }
+        if (config.getEventsDiskCapacityBytes() > 0 || spillToDisk) {
+            String mobileKey = config.getMobileKeys().get(environmentName);
+            File directory = new File(context.getFilesDir(), LDConfig.SHARED_PREFS_BASE_KEY + mobileKey + "-events");
+            int capacityBytes = config.getEventsDiskCapacityBytes() > 0
+                    ? config.getEventsDiskCapacityBytes() : LDConfig.DEFAULT_EVENTS_SPILL_CAPACITY_BYTES;
+            this.fileQueue = new EventFileQueue(directory, config.getFilteredEventGson(), capacityBytes);
+        } else {
+            this.fileQueue = null;
+        }
+        if (fileQueue != null && !spillToDisk) {
+            // The thread exits when there is nothing to write
+            this.persistExecutor = new ThreadPoolExecutor(0, 1, PERSIST_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), r -> {
+                        Thread thread = Executors.defaultThreadFactory().newThread(r);
+                        thread.setName("LaunchDarkly-EventPersister");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        } else {
+            this.persistExecutor = null;
+        }
+        this.deduplicator = config.getFeatureEventDeduplicationCapacity() > 0
+                ? new FeatureEventDeduplicator(config.getFeatureEventDeduplicationCapacity()) : null;
+        this.metricAggregator = config.getMetricEventAggregationCapacity() > 0
+                ? new MetricEventAggregator(config.getMetricEventAggregationCapacity()) : null;
+        this.highWaterMark = config.getEventsFlushHighWaterMark();
         this.consumer = new Consumer(config);
         this.summaryEventStore = summaryEventStore;
         this.client = sharedClient;
         this.diagnosticStore = diagnosticStore;
     }
 
-    public void start() {
+    public synchronized void start() {
         if (scheduler == null) {
-            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
                 final AtomicLong count = new AtomicLong(0);
 
                 @Override
@@ -75,30 +151,240 @@ class DefaultEventProcessor implements EventProcessor, Closeable {
                     return thread;
                 }
             });
+            // Timed flushes and retries do not outlive the scheduler, so that nothing is sent
+            // after the processor is stopped and the thread exits promptly. Tasks that are already
+            // due, such as the final flush queued by close(), still run.
+            executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            scheduler = executor;
 
-            scheduler.scheduleAtFixedRate(consumer, config.getEventsFlushIntervalMillis(), config.getEventsFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+            flushIntervalMillis = config.getEventsFlushIntervalMillis();
+            scheduleFlush(flushIntervalMillis);
+            // Batches that failed while the processor was stopped are retried on the new scheduler
+            scheduler.execute(consumer::resumeRetries);
         }
     }
 
-    public void stop() {
+    public synchronized void stop() {
         if (scheduler != null) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+            }
+            consumer.cancelRetry();
             scheduler.shutdown();
             scheduler = null;
+            scheduledFlush = null;
         }
     }
 
     public boolean sendEvent(Event e) {
-        return queue.offer(e);
+        if (deduplicator != null && e instanceof FeatureRequestEvent && "feature".equals(e.kind)) {
+            // Held until the next flush, unless it displaces an older event
+            e = deduplicator.add((FeatureRequestEvent) e);
+            if (e == null) {
+                return true;
+            }
+        } else if (metricAggregator != null && e instanceof CustomEvent && ((CustomEvent) e).metricValue != null) {
+            // Held until the next flush, unless it displaces an older aggregate
+            e = metricAggregator.add((CustomEvent) e);
+            if (e == null) {
+                return true;
+            }
+        }
+        return enqueue(e);
+    }
+
+    private boolean enqueue(Event e) {
+        boolean added = queue.offer(e) || (spillToDisk && fileQueue.append(e));
+        if (added && persistExecutor != null) {
+            requestPersist();
+        }
+        if (added && highWaterMark > 0) {
+            int pending = eventsSinceFlush.incrementAndGet();
+            if (pending >= highWaterMark) {
+                requestEarlyFlush();
+            } else if (pending == 1) {
+                resumeFlushInterval();
+            }
+        }
+        return added;
+    }
+
+    private synchronized void scheduleFlush(long delayMillis) {
+        if (scheduler == null) {
+            return;
+        }
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+        }
+        final ScheduledExecutorService owner = scheduler;
+        scheduledFlush = owner.schedule(() -> timedFlush(owner), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Flushes and schedules the next timed flush on the given scheduler, unless the processor was
+     * stopped or restarted with a new scheduler in the meantime.
+     */
+    private void timedFlush(ScheduledExecutorService owner) {
+        boolean sent = consumer.flush();
+        synchronized (this) {
+            if (scheduler != owner) {
+                return;
+            }
+            if (highWaterMark <= 0 || sent) {
+                flushIntervalMillis = config.getEventsFlushIntervalMillis();
+            } else {
+                // Nothing to send, so wake up less often until events are recorded again
+                flushIntervalMillis = Math.min(flushIntervalMillis * 2,
+                        (long) config.getEventsFlushIntervalMillis() * MAX_IDLE_FLUSH_INTERVAL_MULTIPLIER);
+            }
+            scheduleFlush(flushIntervalMillis);
+        }
+    }
+
+    /**
+     * Flushes as soon as possible because the high-water mark was reached. Requests made while an
+     * early flush is pending are coalesced into it.
+     */
+    private void requestEarlyFlush() {
+        if (!earlyFlushPending.compareAndSet(false, true)) {
+            return;
+        }
+        ScheduledExecutorService currentScheduler = scheduler;
+        try {
+            if (currentScheduler != null) {
+                currentScheduler.execute(() -> {
+                    earlyFlushPending.set(false);
+                    timedFlush(currentScheduler);
+                });
+                return;
+            }
+        } catch (RejectedExecutionException e) {
+            // The processor was stopped
+        }
+        earlyFlushPending.set(false);
+    }
+
+    /**
+     * Restores the configured flush interval when the first event is recorded after the interval
+     * was lengthened while idle.
+     */
+    private synchronized void resumeFlushInterval() {
+        if (flushIntervalMillis > config.getEventsFlushIntervalMillis()) {
+            flushIntervalMillis = config.getEventsFlushIntervalMillis();
+            scheduleFlush(flushIntervalMillis);
+        }
+    }
+
+    /**
+     * Writes the events recorded in memory to the file queue on the persist executor. Requests
+     * made while a write is pending are coalesced into it.
+     */
+    private void requestPersist() {
+        if (!persistPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            persistExecutor.execute(this::persist);
+        } catch (RejectedExecutionException e) {
+            // The processor was closed
+            persistPending.set(false);
+        }
+    }
+
+    private void persist() {
+        persist(Collections.<Event>emptyList());
+    }
+
+    /**
+     * Writes the events recorded in memory to the file queue, followed by the given events held
+     * for the flush window that just ended.
+     */
+    private void persist(List<? extends Event> held) {
+        persistPending.set(false);
+        // Events are drained and written together, so that they reach the file in order
+        synchronized (persistLock) {
+            List<Event> events = new ArrayList<>(queue.size() + held.size());
+            queue.drainTo(events);
+            events.addAll(held);
+            if (events.isEmpty()) {
+                return;
+            }
+            int written = fileQueue.appendAll(events);
+            if (written < events.size()) {
+                LDConfig.LOG.w("Unable to write %d event(s) to the event queue file", events.size() - written);
+                if (diagnosticStore != null) {
+                    diagnosticStore.incrementDroppedEventCount(events.size() - written);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the events held for the current flush window, starting a new window.
+     */
+    private List<Event> drainHeld() {
+        List<Event> held = new ArrayList<>();
+        if (deduplicator != null) {
+            held.addAll(deduplicator.drain());
+        }
+        if (metricAggregator != null) {
+            held.addAll(metricAggregator.drain());
+        }
+        return held;
     }
 
     @Override
     public void close() {
-        stop();
+        // Queued before the scheduler is shut down, which lets it finish submitted tasks
         flush();
+        stop();
+        if (persistExecutor != null) {
+            // Events recorded since are written before the file is closed
+            persistExecutor.execute(() -> {
+                persist();
+                fileQueue.close();
+            });
+            persistExecutor.shutdown();
+        } else if (fileQueue != null) {
+            fileQueue.close();
+        }
     }
 
-    public void flush() {
-        Executors.newSingleThreadExecutor().execute(consumer);
+    /**
+     * Flushes events on the scheduler's thread. Requests made before a requested flush has started
+     * are coalesced into it.
+     *
+     * @return a future that completes when the flush is done, or immediately if the processor is
+     * stopped, in which case events are kept until it is started again
+     */
+    public synchronized Future<Void> flush() {
+        if (pendingFlush != null) {
+            return pendingFlush;
+        }
+        if (scheduler == null) {
+            return new LDSuccessFuture<>(null);
+        }
+        final LDAwaitFuture<Void> result = new LDAwaitFuture<>();
+        try {
+            scheduler.execute(() -> {
+                synchronized (DefaultEventProcessor.this) {
+                    // Events recorded from now on may not be included, so a new request needs a
+                    // new flush
+                    pendingFlush = null;
+                }
+                try {
+                    consumer.flush();
+                    result.set(null);
+                } catch (RuntimeException e) {
+                    result.setException(e);
+                    throw e;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return new LDSuccessFuture<>(null);
+        }
+        pendingFlush = result;
+        return result;
     }
 
     @VisibleForTesting
@@ -112,6 +398,13 @@ class DefaultEventProcessor implements EventProcessor, Closeable {
 
     class Consumer implements Runnable {
         private final LDConfig config;
+        // Batches waiting to be delivered, oldest first. A batch that fails to be delivered is
+        // retried after a delay, and batches flushed in the meantime are queued behind it.
+        private final ArrayDeque<EventBatch> pending = new ArrayDeque<>();
+        private long pendingBytes;
+        // The scheduled retry, which is done once it has run or been cancelled by stop()
+        private volatile ScheduledFuture<?> retryTask;
+        private final Random random = new Random();
 
         Consumer(LDConfig config) {
             this.config = config;
@@ -122,10 +415,35 @@ class DefaultEventProcessor implements EventProcessor, Closeable {
             flush();
         }
 
-        synchronized void flush() {
+        /**
+         * @return true if there were any events to send
+         */
+        synchronized boolean flush() {
+            eventsSinceFlush.set(0);
             if (isClientConnected(context, environmentName)) {
+                if (persistExecutor != null) {
+                    // Events recorded in memory, and those held for the window, are sent from the
+                    // file queue
+                    persist(drainHeld());
+                }
                 List<Event> events = new ArrayList<>(queue.size() + 1);
                 long eventsInBatch = queue.drainTo(events);
+                int evicted = queue.takeEvictedCount();
+                if (evicted > 0) {
+                    LDConfig.LOG.w("Exceeded event queue capacity, discarded %d older event(s). Increase capacity to avoid dropping events.", evicted);
+                    if (diagnosticStore != null) {
+                        diagnosticStore.incrementDroppedEventCount(evicted);
+                    }
+                }
+                // Events kept on disk, including any left over from an earlier process
+                EventFileQueue.Batch persisted = fileQueue == null ? null : fileQueue.drain();
+                List<String> persistedEvents = persisted == null ? Collections.<String>emptyList() : persisted.readEvents();
+                eventsInBatch += persistedEvents.size();
+                if (persistExecutor == null) {
+                    List<Event> held = drainHeld();
+                    events.addAll(held);
+                    eventsInBatch += held.size();
+                }
                 if (diagnosticStore != null) {
                     diagnosticStore.recordEventsInLastBatch(eventsInBatch);
                 }
@@ -135,61 +453,309 @@ class DefaultEventProcessor implements EventProcessor, Closeable {
                     events.add(summaryEvent);
                 }
 
-                if (!events.isEmpty()) {
-                    postEvents(events);
+                if (events.isEmpty() && persistedEvents.isEmpty()) {
+                    if (persisted != null && !persisted.isEmpty()) {
+                        // Only incomplete records were left
+                        fileQueue.acknowledge(persisted);
+                    }
+                    return false;
+                }
+                List<EventBatch> batches = split(persistedEvents, events, persisted);
+                if (persisted != null) {
+                    // The segments are now held by the batches with their events
+                    fileQueue.acknowledge(persisted);
+                }
+                for (EventBatch batch : batches) {
+                    pending.add(batch);
+                    if (isRetryScheduled()) {
+                        retain(batch);
+                    }
+                }
+                if (!isRetryScheduled()) {
+                    deliverPending();
+                }
+                return true;
+            } else {
+                // The summary is kept until the client can connect, so make sure it is on disk
+                summaryEventStore.checkpoint();
+                if (persistExecutor != null) {
+                    // As are the events held for the window that ended
+                    persist(drainHeld());
+                }
+                return false;
+            }
+        }
+
+        /**
+         * Schedules a retry of the batches that are waiting, if one is not already scheduled.
+         */
+        synchronized void resumeRetries() {
+            if (!isRetryScheduled() && !pending.isEmpty()) {
+                scheduleRetry(pending.peek());
+            }
+        }
+
+        /**
+         * Retries delivery of the batches that are waiting, if there are any.
+         */
+        synchronized void retry() {
+            retryTask = null;
+            if (pending.isEmpty()) {
+                return;
+            }
+            if (isClientConnected(context, environmentName)) {
+                deliverPending();
+            } else {
+                EventBatch batch = pending.peek();
+                batch.attempts++;
+                scheduleRetry(batch);
+            }
+        }
+
+        private void deliverPending() {
+            while (!pending.isEmpty()) {
+                EventBatch batch = pending.peek();
+                if (!postEvents(batch)) {
+                    batch.attempts++;
+                    // This and any batches from the same flush now wait for a retry
+                    for (EventBatch waiting : new ArrayList<>(pending)) {
+                        if (waiting.bytes < 0 && pending.contains(waiting)) {
+                            retain(waiting);
+                        }
+                    }
+                    if (!pending.isEmpty()) {
+                        scheduleRetry(pending.peek());
+                    }
+                    return;
+                }
+                pending.poll();
+                if (batch.bytes > 0) {
+                    pendingBytes -= batch.bytes;
+                }
+                if (batch.persisted != null) {
+                    fileQueue.acknowledge(batch.persisted);
                 }
             }
         }
 
-        private void postEvents(List<Event> events) {
-            String content = config.getFilteredEventGson().toJson(events);
-            String eventPayloadId = UUID.randomUUID().toString();
+        /**
+         * Removes the user from a feature or custom event, which then refers to the user by key,
+         * when users are sent in index events.
+         *
+         * @return the user to index, or null if the event keeps its user
+         */
+        private LDUser stripUser(Event e) {
+            if (!(e instanceof GenericEvent) || ((GenericEvent) e).user == null
+                    || !("feature".equals(e.kind) || "custom".equals(e.kind))) {
+                // Debug events keep the full user
+                return null;
+            }
+            GenericEvent event = (GenericEvent) e;
+            LDUser user = event.user;
+            event.userKey = user.getKey();
+            event.user = null;
+            return user;
+        }
+
+        private IndexEvent indexEventFor(GenericEvent event, LDUser user) {
+            IndexEvent indexEvent = new IndexEvent(user);
+            indexEvent.creationDate = event.creationDate;
+            return indexEvent;
+        }
+
+        /**
+         * Splits the events of a flush into batches that are each within the maximum payload size,
+         * if there is one. Each event is measured as it is added to a batch, so the serialized
+         * events of the whole flush are never held at once. Each batch holds a slice of the
+         * segments on disk that its events came from, so that they are only deleted once every
+         * batch with their events has been delivered, and are kept for a later flush if any of
+         * those batches is discarded.
+         * <p>
+         * When users are sent in index events, each batch has an index event before the first
+         * event for each user that it does not identify, so that every payload can be processed
+         * on its own.
+         */
+        private List<EventBatch> split(List<String> persistedEvents, List<Event> events,
+                                       EventFileQueue.Batch persisted) {
+            Gson gson = config.getFilteredEventGson();
+            int maxBytes = config.getEventsMaxPayloadBytes();
+            List<EventBatch> batches = new ArrayList<>();
+            List<String> chunkPersisted = new ArrayList<>();
+            List<Event> chunkEvents = new ArrayList<>();
+            Set<String> chunkUsers = new HashSet<>();
+            // Index of the first event on disk in the current batch
+            int persistedStart = 0;
+            // The brackets of the JSON array
+            long chunkBytes = 2;
+            for (String json : persistedEvents) {
+                // Including the separating comma
+                long eventBytes = maxBytes > 0 ? utf8Length(json) + 1 : 0;
+                if (maxBytes > 0 && !chunkPersisted.isEmpty() && chunkBytes + eventBytes > maxBytes) {
+                    int persistedEnd = persistedStart + chunkPersisted.size();
+                    batches.add(new EventBatch(
+                            new EventsRequestBody(gson, chunkPersisted, Collections.<Event>emptyList()),
+                            slicePersisted(persisted, persistedStart, chunkPersisted.size())));
+                    persistedStart = persistedEnd;
+                    chunkPersisted = new ArrayList<>();
+                    chunkBytes = 2;
+                }
+                chunkPersisted.add(json);
+                chunkBytes += eventBytes;
+            }
+            for (Event e : events) {
+                LDUser user = config.isUserIndexEvents() ? stripUser(e) : null;
+                long eventBytes = maxBytes > 0 ? EventsRequestBody.measureBytes(gson, e) + 1 : 0;
+                IndexEvent indexEvent = null;
+                long indexBytes = 0;
+                if (user != null && !chunkUsers.contains(user.getKey())) {
+                    indexEvent = indexEventFor((GenericEvent) e, user);
+                    indexBytes = maxBytes > 0 ? EventsRequestBody.measureBytes(gson, indexEvent) + 1 : 0;
+                }
+                if (maxBytes > 0 && (!chunkPersisted.isEmpty() || !chunkEvents.isEmpty())
+                        && chunkBytes + indexBytes + eventBytes > maxBytes) {
+                    batches.add(new EventBatch(new EventsRequestBody(gson, chunkPersisted, chunkEvents),
+                            slicePersisted(persisted, persistedStart, chunkPersisted.size())));
+                    chunkPersisted = Collections.emptyList();
+                    chunkEvents = new ArrayList<>();
+                    chunkUsers.clear();
+                    chunkBytes = 2;
+                    if (user != null && indexEvent == null) {
+                        indexEvent = indexEventFor((GenericEvent) e, user);
+                        indexBytes = EventsRequestBody.measureBytes(gson, indexEvent) + 1;
+                    }
+                }
+                if (indexEvent != null) {
+                    chunkEvents.add(indexEvent);
+                    chunkUsers.add(user.getKey());
+                } else if (e instanceof IdentifyEvent && ((IdentifyEvent) e).user != null) {
+                    chunkUsers.add(((IdentifyEvent) e).user.getKey());
+                }
+                chunkEvents.add(e);
+                chunkBytes += indexBytes + eventBytes;
+            }
+            batches.add(new EventBatch(new EventsRequestBody(gson, chunkPersisted, chunkEvents),
+                    slicePersisted(persisted, persistedStart, chunkPersisted.size())));
+            if (batches.size() > 1) {
+                LDConfig.LOG.d("Split %d event(s) into %d payloads", persistedEvents.size() + events.size(), batches.size());
+            }
+            return batches;
+        }
+
+        private EventFileQueue.Batch slicePersisted(EventFileQueue.Batch persisted, int from, int count) {
+            return persisted == null || count == 0 ? null : fileQueue.slice(persisted, from, from + count);
+        }
+
+        /**
+         * Counts a batch that is waiting for delivery towards the retained bytes, discarding the
+         * oldest batches if that exceeds the configured capacity.
+         */
+        private void retain(EventBatch batch) {
+            batch.bytes = batch.body.measureBytes();
+            pendingBytes += batch.bytes;
+            while (pendingBytes > config.getEventsRetryCapacityBytes() && !pending.isEmpty()) {
+                EventBatch oldest = pending.poll();
+                if (oldest.bytes > 0) {
+                    pendingBytes -= oldest.bytes;
+                }
+                if (oldest.persisted != null) {
+                    // Its segments stay on disk, even if other batches holding them are
+                    // delivered, so its events are included in a later flush
+                    fileQueue.release(oldest.persisted);
+                }
+                LDConfig.LOG.w("Exceeded capacity for events waiting to be retried, discarding %d event(s)",
+                        oldest.body.getEventCount());
+                if (diagnosticStore != null) {
+                    diagnosticStore.incrementDroppedEventCount(oldest.body.getEventCount());
+                }
+            }
+        }
+
+        private boolean isRetryScheduled() {
+            ScheduledFuture<?> task = retryTask;
+            return task != null && !task.isDone();
+        }
+
+        /**
+         * Cancels the scheduled retry, if there is one. This does not wait for the consumer, which
+         * may be posting events; the batches that are waiting are retried when the processor is
+         * started again.
+         */
+        void cancelRetry() {
+            ScheduledFuture<?> task = retryTask;
+            if (task != null) {
+                task.cancel(false);
+            }
+        }
+
+        private void scheduleRetry(EventBatch batch) {
+            long backoff = Math.min(BASE_RETRY_DELAY_MILLIS << Math.min(Math.max(batch.attempts, 1) - 1, 20), MAX_RETRY_DELAY_MILLIS);
+            // Half of the delay is random, so that clients do not retry in step
+            long delay = backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+            delay = Math.max(delay, Math.min(batch.retryAfterMillis, MAX_RETRY_AFTER_MILLIS));
+            ScheduledExecutorService currentScheduler = scheduler;
+            if (currentScheduler == null) {
+                // Retried once the processor is started again
+                return;
+            }
+            try {
+                retryTask = currentScheduler.schedule(this::retry, delay, TimeUnit.MILLISECONDS);
+                LDConfig.LOG.w("Will retry posting events after %d ms", delay);
+            } catch (RejectedExecutionException e) {
+                // The processor was stopped
+            }
+        }
+
+        /**
+         * Posts a batch, using the same payload ID for each attempt.
+         *
+         * @return false if the batch could not be delivered but may be accepted if retried later
+         */
+        private boolean postEvents(EventBatch batch) {
+            GzipRequestBody gzipBody = config.isCompressEvents() ? new GzipRequestBody(batch.body) : null;
             String url = config.getEventsUri().buildUpon().appendPath("mobile").build().toString();
             HashMap<String, String> baseHeadersForRequest = new HashMap<>();
-            baseHeadersForRequest.put("X-LaunchDarkly-Payload-ID", eventPayloadId);
+            baseHeadersForRequest.put("X-LaunchDarkly-Payload-ID", batch.payloadId);
             baseHeadersForRequest.putAll(baseEventHeaders);
+            if (gzipBody != null) {
+                baseHeadersForRequest.put(GzipRequestBody.CONTENT_ENCODING_HEADER, GzipRequestBody.GZIP);
+            }
 
-            LDConfig.LOG.d("Posting %s event(s) to %s", events.size(), url);
-            LDConfig.LOG.d("Events body: %s", content);
-
-            for (int attempt = 0; attempt < 2; attempt++) {
-                if (attempt > 0) {
-                    LDConfig.LOG.w("Will retry posting events after 1 second");
-                    try {
-                        Thread.sleep(1000);
-                    } catch (InterruptedException e) {}
-                }
+            LDConfig.LOG.d("Posting %s event(s) to %s", batch.body.getEventCount(), url);
 
-                Request request = new Request.Builder().url(url)
-                        .headers(config.headersForEnvironment(environmentName, baseHeadersForRequest))
-                        .post(RequestBody.create(content, JSON))
-                        .build();
+            Request request = new Request.Builder().url(url)
+                    .headers(config.headersForEnvironment(environmentName, baseHeadersForRequest))
+                    .post(gzipBody != null ? gzipBody : batch.body)
+                    .build();
 
-                try (Response response = client.newCall(request).execute()) {
-                    LDConfig.LOG.d("Events Response: %s", response.code());
-                    LDConfig.LOG.d("Events Response Date: %s", response.header("Date"));
+            try (Response response = client.newCall(request).execute()) {
+                LDConfig.LOG.d("Events Response: %s", response.code());
+                LDConfig.LOG.d("Events Response Date: %s", response.header("Date"));
 
-                    if (!response.isSuccessful()) {
-                        LDConfig.LOG.w("Unexpected response status when posting events: %d", response.code());
-                        if (isHttpErrorRecoverable(response.code())) {
-                            continue;
-                        }
+                if (!response.isSuccessful()) {
+                    LDConfig.LOG.w("Unexpected response status when posting events: %d", response.code());
+                    if (isHttpErrorRecoverable(response.code())) {
+                        batch.retryAfterMillis = parseRetryAfter(response.header("Retry-After"));
+                        return false;
                     }
+                }
 
-                    tryUpdateDate(response);
-                    break;
-                } catch (IOException e) {
-                    LDConfig.LOG.e(e, "Unhandled exception in LaunchDarkly client attempting to connect to URI: %s", request.url());
+                if (gzipBody != null && diagnosticStore != null) {
+                    diagnosticStore.recordCompressedEventPayload(gzipBody.getRawBytes(), gzipBody.getCompressedBytes());
                 }
+                tryUpdateDate(response);
+                return true;
+            } catch (IOException e) {
+                LDConfig.LOG.e(e, "Unhandled exception in LaunchDarkly client attempting to connect to URI: %s", request.url());
+                batch.retryAfterMillis = 0;
+                return false;
             }
         }
 
         private void tryUpdateDate(Response response) {
             String dateString = response.header("Date");
             if (dateString != null) {
-                SimpleDateFormat sdf = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
                 try {
-                    Date date = sdf.parse(dateString);
+                    Date date = httpDateFormat().parse(dateString);
                     currentTimeMs = date.getTime();
                 } catch (ParseException pe) {
                     LDConfig.LOG.e(pe, "Failed to parse date header");
@@ -197,4 +763,68 @@ class DefaultEventProcessor implements EventProcessor, Closeable {
             }
         }
     }
+
+    /**
+     * Parses a Retry-After header, which is either a number of seconds or a date.
+     *
+     * @return the delay requested by the header in milliseconds, or 0 if there is none
+     */
+    static long parseRetryAfter(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.max(TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim())), 0);
+        } catch (NumberFormatException e) {
+            try {
+                return Math.max(httpDateFormat().parse(value).getTime() - System.currentTimeMillis(), 0);
+            } catch (ParseException pe) {
+                LDConfig.LOG.w("Ignoring invalid Retry-After header: %s", value);
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes in the UTF-8 encoding of a string, without encoding it.
+     */
+    static long utf8Length(String s) {
+        long length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static SimpleDateFormat httpDateFormat() {
+        return new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+    }
+
+    /**
+     * A batch of events to be posted together, which keeps its payload ID across retries.
+     */
+    private static final class EventBatch {
+        final EventsRequestBody body;
+        final EventFileQueue.Batch persisted;
+        final String payloadId = UUID.randomUUID().toString();
+        int attempts;
+        long retryAfterMillis;
+        // Serialized size, measured once the batch has to wait for delivery
+        long bytes = -1;
+
+        EventBatch(EventsRequestBody body, EventFileQueue.Batch persisted) {
+            this.body = body;
+            this.persisted = persisted;
+        }
+    }
 }
@@ -27,21 +27,37 @@ class DefaultUserManager implements UserManager {
     private final FlagStoreManager flagStoreManager;
     private final SummaryEventStore summaryEventStore;
     private final String environmentName;
+    private final FlagFilter flagFilter;
 
     private LDUser currentUser;
 
     private final ExecutorService executor;
 
-    static synchronized DefaultUserManager newInstance(Application application, FeatureFetcher fetcher, String environmentName, String mobileKey, int maxCachedUsers) {
-        return new DefaultUserManager(application, fetcher, environmentName, mobileKey, maxCachedUsers);
+    static synchronized DefaultUserManager newInstance(Application application, FeatureFetcher fetcher, String environmentName, String mobileKey, int maxCachedUsers, FlagStoreType flagStoreType, FlagFilter flagFilter) {
+        return new DefaultUserManager(application, fetcher, environmentName, mobileKey, maxCachedUsers, createFlagStoreFactory(application, mobileKey, flagStoreType), flagFilter);
+    }
+
+    static FlagStoreFactory createFlagStoreFactory(Application application, String mobileKey, FlagStoreType flagStoreType) {
+        if (flagStoreType == FlagStoreType.BINARY_FILE) {
+            return new BinaryFileFlagStoreFactory(application);
+        }
+        if (flagStoreType == FlagStoreType.SQLITE) {
+            return new SQLiteFlagStoreFactory(application, mobileKey);
+        }
+        return new SharedPrefsFlagStoreFactory(application);
     }
 
     DefaultUserManager(Application application, FeatureFetcher fetcher, String environmentName, String mobileKey, int maxCachedUsers) {
+        this(application, fetcher, environmentName, mobileKey, maxCachedUsers, new SharedPrefsFlagStoreFactory(application), FlagFilter.ALL);
+    }
+
+    DefaultUserManager(Application application, FeatureFetcher fetcher, String environmentName, String mobileKey, int maxCachedUsers, FlagStoreFactory flagStoreFactory, FlagFilter flagFilter) {
         this.application = application;
         this.fetcher = fetcher;
-        this.flagStoreManager = new SharedPrefsFlagStoreManager(application, mobileKey, new SharedPrefsFlagStoreFactory(application), maxCachedUsers);
+        this.flagStoreManager = new SharedPrefsFlagStoreManager(application, mobileKey, flagStoreFactory, maxCachedUsers);
         this.summaryEventStore = new SharedPrefsSummaryEventStore(application, LDConfig.SHARED_PREFS_BASE_KEY + mobileKey + "-summaryevents");
         this.environmentName = environmentName;
+        this.flagFilter = flagFilter;
 
         executor = new BackgroundThreadExecutor().newFixedThreadPool(1);
     }
@@ -136,7 +152,7 @@ class DefaultUserManager implements UserManager {
         LDConfig.LOG.d("saveFlagSettings for user key: %s", currentUser.getKey());
 
         try {
-            final List<Flag> flags = GsonCache.getGson().fromJson(flagsJson, FlagsResponse.class).getFlags();
+            final List<Flag> flags = FlagsResponseSerialization.parseFlags(flagsJson, flagFilter);
             flagStoreManager.getCurrentUserStore().clearAndApplyFlagUpdates(flags);
             onCompleteListener.onSuccess(null);
         } catch (Exception e) {
@@ -152,6 +168,10 @@ class DefaultUserManager implements UserManager {
     public void deleteCurrentUserFlag(@NonNull final String json, final LDUtil.ResultCallback<Void> onCompleteListener) {
         try {
             final DeleteFlagResponse deleteFlagResponse = GsonCache.getGson().fromJson(json, DeleteFlagResponse.class);
+            if (deleteFlagResponse != null && !flagFilter.accepts(deleteFlagResponse.flagToUpdate())) {
+                onCompleteListener.onSuccess(null);
+                return;
+            }
             executor.submit(() -> {
                 if (deleteFlagResponse != null) {
                     flagStoreManager.getCurrentUserStore().applyFlagUpdate(deleteFlagResponse);
@@ -171,7 +191,7 @@ class DefaultUserManager implements UserManager {
 
     public void putCurrentUserFlags(final String json, final LDUtil.ResultCallback<Void> onCompleteListener) {
         try {
-            final List<Flag> flags = GsonCache.getGson().fromJson(json, FlagsResponse.class).getFlags();
+            final List<Flag> flags = FlagsResponseSerialization.parseFlags(json, flagFilter);
             executor.submit(() -> {
                 LDConfig.LOG.d("PUT for user key: %s", currentUser.getKey());
                 flagStoreManager.getCurrentUserStore().clearAndApplyFlagUpdates(flags);
@@ -187,6 +207,11 @@ class DefaultUserManager implements UserManager {
     public void patchCurrentUserFlags(@NonNull final String json, final LDUtil.ResultCallback<Void> onCompleteListener) {
         try {
             final Flag flag = GsonCache.getGson().fromJson(json, Flag.class);
+            if (flag != null && !flagFilter.accepts(flag.getKey())) {
+                LDConfig.LOG.d("Ignoring PATCH for filtered flag: %s", flag.getKey());
+                onCompleteListener.onSuccess(null);
+                return;
+            }
             executor.submit(() -> {
                 if (flag != null) {
                     flagStoreManager.getCurrentUserStore().applyFlagUpdate(flag);
@@ -85,6 +85,9 @@ class DiagnosticEvent {
         long droppedEvents;
         long eventsInLastBatch;
         List<StreamInit> streamInits;
+        // Totals for event payloads sent since dataSinceDate, only present when compression is enabled
+        Long eventPayloadBytes;
+        Long compressedEventPayloadBytes;
 
         Statistics(long creationDate, DiagnosticId id, long dataSinceDate, long droppedEvents,
                    long eventsInLastBatch, List<StreamInit> streamInits) {
@@ -118,11 +118,18 @@ class DiagnosticEventProcessor {
 
     void sendDiagnosticEventSync(DiagnosticEvent diagnosticEvent) {
         String content = GsonCache.getGson().toJson(diagnosticEvent);
+        RequestBody body = RequestBody.create(content, JSON);
+        HashMap<String, String> headers = baseDiagnosticHeaders;
+        if (config.isCompressEvents()) {
+            body = new GzipRequestBody(body);
+            headers = new HashMap<>(baseDiagnosticHeaders);
+            headers.put(GzipRequestBody.CONTENT_ENCODING_HEADER, GzipRequestBody.GZIP);
+        }
 
         Request request = new Request.Builder()
                 .url(config.getEventsUri().buildUpon().appendEncodedPath("mobile/events/diagnostic").build().toString())
-                .headers(config.headersForEnvironment(environment, baseDiagnosticHeaders))
-                .post(RequestBody.create(content, JSON)).build();
+                .headers(config.headersForEnvironment(environment, headers))
+                .post(body).build();
 
         LDConfig.LOG.d("Posting diagnostic event to %s with body %s", request.url(), content);
 
@@ -19,6 +19,8 @@ class DiagnosticStore {
     private static final String DROPPED_EVENTS_KEY = "droppedEvents";
     private static final String STREAM_INITS_KEY = "streamInits";
     private static final String EVENT_BATCH_KEY = "eventInLastBatch";
+    private static final String EVENT_PAYLOAD_BYTES_KEY = "eventPayloadBytes";
+    private static final String COMPRESSED_EVENT_PAYLOAD_BYTES_KEY = "compressedEventPayloadBytes";
 
     private final SharedPreferences diagSharedPrefs;
     private final String sdkKey;
@@ -60,6 +62,8 @@ class DiagnosticStore {
                 .putLong(DATA_SINCE_KEY, System.currentTimeMillis())
                 .putLong(DROPPED_EVENTS_KEY, 0)
                 .putLong(EVENT_BATCH_KEY, 0)
+                .putLong(EVENT_PAYLOAD_BYTES_KEY, 0)
+                .putLong(COMPRESSED_EVENT_PAYLOAD_BYTES_KEY, 0)
                 .putString(STREAM_INITS_KEY, "[]")
                 .apply();
         this.newId = true;
@@ -70,6 +74,8 @@ class DiagnosticStore {
                 .putLong(DATA_SINCE_KEY, dataSince)
                 .putLong(DROPPED_EVENTS_KEY, 0)
                 .putLong(EVENT_BATCH_KEY, 0)
+                .putLong(EVENT_PAYLOAD_BYTES_KEY, 0)
+                .putLong(COMPRESSED_EVENT_PAYLOAD_BYTES_KEY, 0)
                 .putString(STREAM_INITS_KEY, "[]")
                 .apply();
     }
@@ -131,13 +137,22 @@ class DiagnosticStore {
                         diagSharedPrefs.getLong(DROPPED_EVENTS_KEY, -1),
                         diagSharedPrefs.getLong(EVENT_BATCH_KEY, 0),
                         streamInits);
+        long compressedPayloadBytes = diagSharedPrefs.getLong(COMPRESSED_EVENT_PAYLOAD_BYTES_KEY, 0);
+        if (compressedPayloadBytes > 0) {
+            event.eventPayloadBytes = diagSharedPrefs.getLong(EVENT_PAYLOAD_BYTES_KEY, 0);
+            event.compressedEventPayloadBytes = compressedPayloadBytes;
+        }
         resetStatsStore(currentTime);
         return event;
     }
 
     void incrementDroppedEventCount() {
+        incrementDroppedEventCount(1);
+    }
+
+    void incrementDroppedEventCount(long count) {
         diagSharedPrefs.edit()
-                .putLong(DROPPED_EVENTS_KEY, diagSharedPrefs.getLong(DROPPED_EVENTS_KEY, 0) + 1)
+                .putLong(DROPPED_EVENTS_KEY, diagSharedPrefs.getLong(DROPPED_EVENTS_KEY, 0) + count)
                 .apply();
     }
 
@@ -156,6 +171,13 @@ class DiagnosticStore {
                 .apply();
     }
 
+    void recordCompressedEventPayload(long rawBytes, long compressedBytes) {
+        diagSharedPrefs.edit()
+                .putLong(EVENT_PAYLOAD_BYTES_KEY, diagSharedPrefs.getLong(EVENT_PAYLOAD_BYTES_KEY, 0) + rawBytes)
+                .putLong(COMPRESSED_EVENT_PAYLOAD_BYTES_KEY, diagSharedPrefs.getLong(COMPRESSED_EVENT_PAYLOAD_BYTES_KEY, 0) + compressedBytes)
+                .apply();
+    }
+
     void recordEventsInLastBatch(long eventsInLastBatch) {
         diagSharedPrefs.edit()
                 .putLong(EVENT_BATCH_KEY, eventsInLastBatch)
@@ -56,6 +56,20 @@ class GenericEvent extends Event {
     }
 }
 
+/**
+ * Carries the full user for events in the same payload that refer to the user only by key.
+ */
+class IndexEvent extends Event {
+    @Expose long creationDate;
+    @Expose LDUser user;
+
+    IndexEvent(LDUser user) {
+        super("index");
+        this.creationDate = System.currentTimeMillis();
+        this.user = user;
+    }
+}
+
 class IdentifyEvent extends GenericEvent {
     IdentifyEvent(LDUser user) {
         super("identify", user.getKey(), user);
@@ -64,8 +78,13 @@ class IdentifyEvent extends GenericEvent {
 
 class CustomEvent extends GenericEvent {
     @Expose final LDValue data;
-    @Expose final Double metricValue;
+    @Expose Double metricValue;
     @Expose String contextKind;
+    // Set when the event stands for several metric events, in which case metricValue is their mean
+    @Expose Integer count;
+    @Expose Double metricSum;
+    @Expose Double metricMin;
+    @Expose Double metricMax;
 
     CustomEvent(String key, LDUser user, LDValue data, Double metricValue, boolean inlineUser) {
         super("custom", key, inlineUser ? user : null);
@@ -87,6 +106,8 @@ class FeatureRequestEvent extends GenericEvent {
     @Expose Integer variation;
     @Expose EvaluationReason reason;
     @Expose String contextKind;
+    // The number of identical evaluations this event stands for, when more than one
+    @Expose Integer count;
 
     FeatureRequestEvent(String key,
                         LDUser user,
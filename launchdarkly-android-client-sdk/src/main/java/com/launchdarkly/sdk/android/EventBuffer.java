@@ -0,0 +1,32 @@
+package com.launchdarkly.sdk.android;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collection;
+
+/**
+ * Holds analytics events recorded by any thread until they are drained by the next flush.
+ */
+interface EventBuffer {
+    /**
+     * Adds an event, or rejects it if the buffer is full.
+     *
+     * @return false if the event was not added
+     */
+    boolean offer(@NonNull Event event);
+
+    /**
+     * Moves all buffered events to the given collection, oldest first.
+     *
+     * @return the number of events moved
+     */
+    int drainTo(@NonNull Collection<? super Event> events);
+
+    int size();
+
+    /**
+     * Returns the number of buffered events discarded to make room for newer ones since this was
+     * last called.
+     */
+    int takeEvictedCount();
+}
@@ -0,0 +1,358 @@
+package com.launchdarkly.sdk.android;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An append-only queue of serialized analytics events kept in a directory of segment files, so
+ * that events recorded before the process is killed can be delivered when it is next started.
+ * <p>
+ * Each event is written as one line of JSON to the current segment. When a segment reaches
+ * {@link #DEFAULT_SEGMENT_BYTES} it is sealed and a new one is started. {@link #drain()} seals the
+ * current segment and returns the sealed segments that are not already part of an earlier batch.
+ * They are deleted by {@link #acknowledge(Batch)} once their events have been delivered, or
+ * returned to the queue by {@link #release(Batch)} if the batch is given up on. A batch whose
+ * events are sent in several payloads is divided with {@link #slice(Batch, int, int)}, and each
+ * segment is only deleted once every slice holding it has been acknowledged. When the total size
+ * would exceed the capacity, the oldest segments are discarded. A record left incomplete by the
+ * process being killed mid-write is ignored.
+ */
+final class EventFileQueue {
+
+    static final int DEFAULT_SEGMENT_BYTES = 64 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String SEGMENT_SUFFIX = ".events";
+
+    private final File directory;
+    private final Gson gson;
+    private final long capacityBytes;
+    private final long segmentBytes;
+
+    // Sealed segments, oldest first
+    private final ArrayDeque<File> sealed = new ArrayDeque<>();
+    // Sealed segments held by batches that have been neither acknowledged nor released
+    private final Map<File, Claim> inFlight = new HashMap<>();
+    private long sealedBytes;
+    private long nextSequence;
+
+    private File current;
+    private OutputStream currentOut;
+    private long currentBytes;
+
+    EventFileQueue(@NonNull File directory, @NonNull Gson gson, long capacityBytes) {
+        this(directory, gson, capacityBytes, DEFAULT_SEGMENT_BYTES);
+    }
+
+    EventFileQueue(@NonNull File directory, @NonNull Gson gson, long capacityBytes, long segmentBytes) {
+        this.directory = directory;
+        this.gson = gson;
+        this.capacityBytes = capacityBytes;
+        this.segmentBytes = Math.min(segmentBytes, capacityBytes);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            LDConfig.LOG.w("Unable to create event queue directory %s", directory);
+        }
+        // Segments left by an earlier process are replayed before any new events
+        File[] existing = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (existing != null) {
+            Arrays.sort(existing);
+            for (File segment : existing) {
+                sealed.add(segment);
+                sealedBytes += segment.length();
+                nextSequence = Math.max(nextSequence, sequenceOf(segment) + 1);
+            }
+            if (existing.length > 0) {
+                LDConfig.LOG.d("Found %d event queue segment(s) to replay", existing.length);
+            }
+        }
+    }
+
+    /**
+     * Appends an event to the queue.
+     *
+     * @return false if the event could not be written
+     */
+    boolean append(@NonNull Event event) {
+        return appendAll(Collections.singletonList(event)) == 1;
+    }
+
+    /**
+     * Appends events to the queue in order, serializing them before taking the queue's lock and
+     * writing them through one buffered stream that is flushed once at the end.
+     *
+     * @return the number of events written
+     */
+    int appendAll(@NonNull List<? extends Event> events) {
+        List<byte[]> records = new ArrayList<>(events.size());
+        for (Event event : events) {
+            records.add((gson.toJson(event) + "\n").getBytes(UTF_8));
+        }
+        synchronized (this) {
+            int written = 0;
+            try {
+                for (byte[] record : records) {
+                    if (record.length > capacityBytes) {
+                        continue;
+                    }
+                    write(record);
+                    written++;
+                }
+            } catch (IOException e) {
+                LDConfig.LOG.e(e, "Unable to write event to queue file");
+            } finally {
+                flushCurrent();
+            }
+            return written;
+        }
+    }
+
+    private void write(byte[] record) throws IOException {
+        if (currentBytes > 0 && currentBytes + record.length > segmentBytes) {
+            seal();
+        }
+        while (!sealed.isEmpty() && sealedBytes + currentBytes + record.length > capacityBytes) {
+            File oldest = sealed.poll();
+            Claim claim = inFlight.remove(oldest);
+            if (claim != null) {
+                claim.released = true;
+            }
+            sealedBytes -= oldest.length();
+            LDConfig.LOG.w("Event queue capacity exceeded, discarding oldest events in %s", oldest.getName());
+            delete(oldest);
+        }
+        if (currentOut == null) {
+            current = new File(directory, String.format(Locale.ROOT, "%019d%s", nextSequence++, SEGMENT_SUFFIX));
+            currentOut = new BufferedOutputStream(new FileOutputStream(current, true));
+        }
+        currentOut.write(record);
+        currentBytes += record.length;
+    }
+
+    /**
+     * Seals the segment currently being written and returns the sealed segments not in an earlier
+     * batch. Their events are kept until the batch is passed to {@link #acknowledge(Batch)}.
+     */
+    @NonNull
+    synchronized Batch drain() {
+        seal();
+        List<Claim> claims = new ArrayList<>();
+        for (File segment : sealed) {
+            if (!inFlight.containsKey(segment)) {
+                Claim claim = new Claim(segment);
+                inFlight.put(segment, claim);
+                claims.add(claim);
+            }
+        }
+        return new Batch(claims);
+    }
+
+    /**
+     * Returns a batch holding the segments that contain the events of the given batch from index
+     * {@code from} up to {@code to}, as counted by {@link Batch#readEvents()}, which must have
+     * been called. The segments stay in flight until the slice is acknowledged or released, as
+     * well as the batch it was taken from.
+     */
+    @NonNull
+    synchronized Batch slice(@NonNull Batch batch, int from, int to) {
+        List<Claim> claims = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < batch.claims.size(); i++) {
+            int end = start + batch.eventCounts[i];
+            Claim claim = batch.claims.get(i);
+            if (start < to && end > from && !claim.released) {
+                claim.holders++;
+                claims.add(claim);
+            }
+            start = end;
+        }
+        return new Batch(claims);
+    }
+
+    /**
+     * Called once the events of a batch have been delivered, or, for a batch that has been
+     * sliced, once it is no longer needed. Deletes each segment that no other batch holds.
+     */
+    synchronized void acknowledge(@NonNull Batch batch) {
+        for (Claim claim : batch.claims) {
+            if (claim.released || --claim.holders > 0) {
+                continue;
+            }
+            inFlight.remove(claim.segment);
+            // A segment may already have been discarded to stay within capacity
+            if (sealed.remove(claim.segment)) {
+                sealedBytes -= claim.segment.length();
+                delete(claim.segment);
+            }
+        }
+    }
+
+    /**
+     * Returns the segments of a batch that will not be delivered to the queue, so that they are
+     * included in the next drain. Other batches holding the same segments can no longer delete
+     * them, so any of their events that were delivered are sent again.
+     */
+    synchronized void release(@NonNull Batch batch) {
+        for (Claim claim : batch.claims) {
+            if (!claim.released) {
+                claim.released = true;
+                inFlight.remove(claim.segment);
+            }
+        }
+    }
+
+    synchronized boolean isEmpty() {
+        return sealed.isEmpty() && currentBytes == 0;
+    }
+
+    /**
+     * Seals the current segment, closing its file. Later events start a new segment.
+     */
+    synchronized void close() {
+        seal();
+    }
+
+    private void seal() {
+        if (current != null && currentBytes > 0) {
+            closeCurrent();
+            sealed.add(current);
+            sealedBytes += currentBytes;
+            current = null;
+            currentBytes = 0;
+        }
+    }
+
+    private void flushCurrent() {
+        if (currentOut != null) {
+            try {
+                currentOut.flush();
+            } catch (IOException e) {
+                LDConfig.LOG.w(e, "Unable to write event queue file");
+            }
+        }
+    }
+
+    private void closeCurrent() {
+        if (currentOut != null) {
+            try {
+                currentOut.close();
+            } catch (IOException e) {
+                LDConfig.LOG.w(e, "Unable to close event queue file");
+            }
+            currentOut = null;
+        }
+    }
+
+    private static void delete(File segment) {
+        if (!segment.delete() && segment.exists()) {
+            LDConfig.LOG.w("Unable to delete event queue file %s", segment);
+        }
+    }
+
+    private static long sequenceOf(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * A segment in flight, shared by the batches that hold it.
+     */
+    private static final class Claim {
+        final File segment;
+        // Guarded by the queue's lock
+        int holders = 1;
+        boolean released;
+
+        Claim(File segment) {
+            this.segment = segment;
+        }
+    }
+
+    /**
+     * The sealed segments returned by a {@link #drain()}, or a slice of them.
+     */
+    static final class Batch {
+        private final List<Claim> claims;
+        // The number of complete events read from each segment
+        private int[] eventCounts;
+
+        Batch(List<Claim> claims) {
+            this.claims = claims;
+        }
+
+        boolean isEmpty() {
+            return claims.isEmpty();
+        }
+
+        /**
+         * Reads the JSON of each complete event record in the batch, in the order they were
+         * appended. Segments that can no longer be read are skipped.
+         */
+        @NonNull
+        List<String> readEvents() {
+            eventCounts = new int[claims.size()];
+            if (claims.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<String> events = new ArrayList<>();
+            for (int s = 0; s < claims.size(); s++) {
+                File segment = claims.get(s).segment;
+                int before = events.size();
+                byte[] contents;
+                try {
+                    contents = readFully(segment);
+                } catch (IOException e) {
+                    LDConfig.LOG.w(e, "Unable to read event queue file %s", segment.getName());
+                    continue;
+                }
+                int start = 0;
+                for (int i = 0; i < contents.length; i++) {
+                    if (contents[i] == '\n') {
+                        if (i > start) {
+                            events.add(new String(contents, start, i - start, UTF_8));
+                        }
+                        start = i + 1;
+                    }
+                }
+                // Anything after the last newline is a partially written record
+                eventCounts[s] = events.size() - before;
+            }
+            return events;
+        }
+
+        private static byte[] readFully(File file) throws IOException {
+            try (FileInputStream in = new FileInputStream(file)) {
+                byte[] contents = new byte[(int) file.length()];
+                int offset = 0;
+                while (offset < contents.length) {
+                    int read = in.read(contents, offset, contents.length - offset);
+                    if (read < 0) {
+                        break;
+                    }
+                    offset += read;
+                }
+                return offset == contents.length ? contents : Arrays.copyOf(contents, offset);
+            }
+        }
+    }
+}
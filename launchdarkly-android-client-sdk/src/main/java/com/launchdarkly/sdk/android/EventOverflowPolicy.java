@@ -0,0 +1,31 @@
+package com.launchdarkly.sdk.android;
+
+/**
+ * Selects which analytics events are discarded when the in-memory event queue is full.
+ *
+ * @see LDConfig.Builder#eventsOverflowPolicy(EventOverflowPolicy)
+ */
+public enum EventOverflowPolicy {
+    /**
+     * Discards the event being recorded, keeping the events already queued. This is the default.
+     */
+    DROP_NEWEST,
+    /**
+     * Discards the oldest queued events to make room for the event being recorded.
+     */
+    DROP_OLDEST,
+    /**
+     * Keeps identify and custom events in preference to feature events. When the queue is full,
+     * recording an identify or custom event discards the oldest queued feature event, and a feature
+     * event is discarded when there is no room for it.
+     */
+    PREFER_IDENTIFY_AND_CUSTOM,
+    /**
+     * Writes events that do not fit in memory to a queue on disk, which is sent along with the
+     * events in memory at the next flush. Events are only discarded when the disk queue is also
+     * full, in which case its oldest events are discarded.
+     *
+     * @see LDConfig.Builder#eventsDiskCapacityBytes(int)
+     */
+    SPILL_TO_DISK
+}
@@ -1,7 +1,9 @@
 package com.launchdarkly.sdk.android;
 
+import java.util.concurrent.Future;
+
 interface EventProcessor {
     void start();
     void stop();
-    void flush();
+    Future<Void> flush();
 }
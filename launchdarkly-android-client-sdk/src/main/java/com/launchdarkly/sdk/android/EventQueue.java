@@ -0,0 +1,185 @@
+package com.launchdarkly.sdk.android;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.Gson;
+import com.launchdarkly.sdk.LDUser;
+import com.launchdarkly.sdk.LDValue;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * An in-memory queue of analytics events waiting for the next flush. The queue is bounded either
+ * by a number of events or, when a byte capacity is given, by the estimated serialized size of the
+ * events, and applies an {@link EventOverflowPolicy} when an event does not fit.
+ * <p>
+ * Sizes are estimated rather than measured, so that recording an event does not serialize it.
+ * The estimate counts the JSON of the values an event carries, such as custom event data, and of
+ * an inlined user, which is measured once for each user object.
+ * <p>
+ * Applying a policy requires a lock, so {@link EventRingBuffer} is used instead when the queue is
+ * bounded by count and discards the newest event.
+ */
+final class EventQueue implements EventBuffer {
+
+    // Allowance for the fixed fields of an event, such as the kind, keys and timestamps
+    static final int BASE_EVENT_BYTES = 128;
+
+    private final Gson gson;
+    private final int capacity;
+    private final long capacityBytes;
+    private final EventOverflowPolicy policy;
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private long bytes;
+    private int evictedCount;
+
+    private LDUser lastUser;
+    private int lastUserBytes;
+
+    /**
+     * @param capacity      the maximum number of events, used when {@code capacityBytes} is 0
+     * @param capacityBytes the maximum estimated size of the events in bytes, or 0
+     * @param policy        how to make room for an event when the queue is full; events that
+     *                      should be spilled to disk are rejected here, like
+     *                      {@link EventOverflowPolicy#DROP_NEWEST}
+     */
+    EventQueue(@NonNull Gson gson, int capacity, long capacityBytes, @NonNull EventOverflowPolicy policy) {
+        this.gson = gson;
+        this.capacity = capacity;
+        this.capacityBytes = capacityBytes;
+        this.policy = policy;
+    }
+
+    /**
+     * Adds an event, discarding queued events to make room for it if the policy allows.
+     *
+     * @return false if the event was not added because the queue is full
+     */
+    @Override
+    public synchronized boolean offer(@NonNull Event event) {
+        Entry entry = new Entry(event, capacityBytes > 0 ? estimateBytes(event) : 0);
+        if (capacityBytes > 0 && entry.bytes > capacityBytes) {
+            return false;
+        }
+        while (!fits(entry)) {
+            if (!evictFor(event)) {
+                return false;
+            }
+        }
+        entries.add(entry);
+        bytes += entry.bytes;
+        return true;
+    }
+
+    @Override
+    public synchronized int drainTo(@NonNull Collection<? super Event> events) {
+        int count = entries.size();
+        for (Entry entry : entries) {
+            events.add(entry.event);
+        }
+        entries.clear();
+        bytes = 0;
+        return count;
+    }
+
+    @Override
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized int takeEvictedCount() {
+        int count = evictedCount;
+        evictedCount = 0;
+        return count;
+    }
+
+    private boolean fits(Entry entry) {
+        if (capacityBytes > 0) {
+            return bytes + entry.bytes <= capacityBytes;
+        }
+        return entries.size() < capacity;
+    }
+
+    private boolean evictFor(Event event) {
+        Iterator<Entry> it = entries.iterator();
+        switch (policy) {
+            case DROP_OLDEST:
+                if (it.hasNext()) {
+                    remove(it, it.next());
+                    return true;
+                }
+                return false;
+            case PREFER_IDENTIFY_AND_CUSTOM:
+                if (!isPreferred(event)) {
+                    return false;
+                }
+                while (it.hasNext()) {
+                    Entry entry = it.next();
+                    if (!isPreferred(entry.event)) {
+                        remove(it, entry);
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private void remove(Iterator<Entry> it, Entry entry) {
+        it.remove();
+        bytes -= entry.bytes;
+        evictedCount++;
+    }
+
+    /**
+     * Identify and custom events are kept over feature and debug events.
+     */
+    private static boolean isPreferred(Event event) {
+        return !(event instanceof FeatureRequestEvent);
+    }
+
+    private int estimateBytes(Event event) {
+        int estimate = BASE_EVENT_BYTES;
+        if (event instanceof GenericEvent) {
+            estimate += estimateBytes(((GenericEvent) event).user);
+        }
+        if (event instanceof CustomEvent) {
+            estimate += estimateBytes(((CustomEvent) event).data);
+        } else if (event instanceof FeatureRequestEvent) {
+            FeatureRequestEvent featureEvent = (FeatureRequestEvent) event;
+            estimate += estimateBytes(featureEvent.value) + estimateBytes(featureEvent.defaultVal);
+        }
+        return estimate;
+    }
+
+    private int estimateBytes(LDUser user) {
+        if (user == null) {
+            return 0;
+        }
+        // Events recorded together are almost always for the same user object
+        if (user != lastUser) {
+            lastUserBytes = gson.toJson(user).length();
+            lastUser = user;
+        }
+        return lastUserBytes;
+    }
+
+    private static int estimateBytes(LDValue value) {
+        return value == null ? 0 : value.toJsonString().length();
+    }
+
+    private static final class Entry {
+        final Event event;
+        final int bytes;
+
+        Entry(Event event, int bytes) {
+            this.event = event;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.launchdarkly.sdk.android;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free buffer of analytics events with many producers and a single consumer, so
+ * that threads recording events do not contend on a lock. When the buffer is full the newest event
+ * is rejected.
+ * <p>
+ * This follows Dmitry Vyukov's bounded queue. Each slot of a power-of-two array has a sequence
+ * number. A producer claims the slot at the tail position with a compare-and-set of the tail,
+ * stores its event, then publishes it by advancing the slot's sequence, which the consumer waits
+ * for. The consumer clears the slot and advances the sequence again to hand the slot back to
+ * producers one lap later. The array may be larger than the capacity, which is enforced separately
+ * against the consumer's position.
+ */
+final class EventRingBuffer implements EventBuffer {
+
+    private final int capacity;
+    private final int mask;
+    private final Event[] events;
+    // Written with release semantics after the slot's event, and read with acquire semantics
+    // before it, so that the event is visible to the thread that sees the new sequence
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    EventRingBuffer(int capacity) {
+        this.capacity = Math.max(capacity, 1);
+        int slots = Integer.highestOneBit(this.capacity);
+        if (slots < this.capacity) {
+            slots <<= 1;
+        }
+        this.mask = slots - 1;
+        this.events = new Event[slots];
+        this.sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    @Override
+    public boolean offer(@NonNull Event event) {
+        long position = tail.get();
+        while (true) {
+            if (position - head.get() >= capacity) {
+                return false;
+            }
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    events[index] = event;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // The slot has not been consumed since the last lap
+                return false;
+            } else {
+                // Another producer claimed this position
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Moves the published events to the given collection. An event whose producer has claimed a
+     * slot but not yet stored the event is left, with any after it, for the next drain.
+     */
+    @Override
+    public synchronized int drainTo(@NonNull Collection<? super Event> drained) {
+        long position = head.get();
+        int count = 0;
+        while (true) {
+            int index = (int) position & mask;
+            if (sequences.get(index) != position + 1) {
+                break;
+            }
+            drained.add(events[index]);
+            events[index] = null;
+            sequences.lazySet(index, position + mask + 1);
+            position++;
+            count++;
+        }
+        head.lazySet(position);
+        return count;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(tail.get() - head.get(), 0);
+    }
+
+    @Override
+    public int takeEvictedCount() {
+        // Full buffers reject the newest event rather than evicting older ones
+        return 0;
+    }
+}
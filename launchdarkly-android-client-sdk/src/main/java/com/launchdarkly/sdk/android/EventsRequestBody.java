@@ -0,0 +1,96 @@
+package com.launchdarkly.sdk.android;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * A request body that serializes a batch of events as a JSON array directly into the request as
+ * OkHttp writes it, rather than building the whole payload as a string first. Events that were
+ * already serialized, such as those read back from an {@link EventFileQueue}, are written as they
+ * are.
+ * <p>
+ * The body holds the events rather than their serialized form, so the same instance can be
+ * written again when the request is retried.
+ */
+final class EventsRequestBody extends RequestBody {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Gson gson;
+    private final List<String> serializedEvents;
+    private final List<Event> events;
+
+    EventsRequestBody(@NonNull Gson gson, @NonNull List<String> serializedEvents, @NonNull List<Event> events) {
+        this.gson = gson;
+        this.serializedEvents = serializedEvents;
+        this.events = events;
+    }
+
+    int getEventCount() {
+        return serializedEvents.size() + events.size();
+    }
+
+    /**
+     * Serializes the events without keeping the output, to find the size of the body.
+     */
+    long measureBytes() {
+        CountingSink counter = new CountingSink(Okio.blackhole());
+        try {
+            BufferedSink sink = Okio.buffer(counter);
+            writeTo(sink);
+            sink.close();
+        } catch (IOException e) {
+            // Not expected, as nothing is written anywhere
+        }
+        return counter.getCount();
+    }
+
+    /**
+     * Serializes a single event without keeping the output, to find its size in a body.
+     */
+    static long measureBytes(@NonNull Gson gson, @NonNull Event event) {
+        CountingSink counter = new CountingSink(Okio.blackhole());
+        try {
+            Writer writer = new OutputStreamWriter(Okio.buffer(counter).outputStream(), UTF_8);
+            gson.toJson(event, event.getClass(), writer);
+            writer.close();
+        } catch (IOException e) {
+            // Not expected, as nothing is written anywhere
+        }
+        return counter.getCount();
+    }
+
+    @Override
+    public MediaType contentType() {
+        return LDConfig.JSON;
+    }
+
+    @Override
+    public void writeTo(@NonNull BufferedSink sink) throws IOException {
+        // Not closed, as that would close the sink, which is owned by OkHttp
+        Writer writer = new OutputStreamWriter(sink.outputStream(), UTF_8);
+        JsonWriter jsonWriter = gson.newJsonWriter(writer);
+        jsonWriter.beginArray();
+        for (String json : serializedEvents) {
+            jsonWriter.jsonValue(json);
+        }
+        for (Event event : events) {
+            gson.toJson(event, event.getClass(), jsonWriter);
+        }
+        jsonWriter.endArray();
+        jsonWriter.flush();
+    }
+}
@@ -0,0 +1,54 @@
+package com.launchdarkly.sdk.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * Collapses identical feature events recorded within a flush window into a single event with a
+ * count. Events are identical when they are for the same user, flag, variation and version, with
+ * the same default value and reason.
+ * <p>
+ * Distinct events are held in a least-recently-used map of bounded size until they are drained at
+ * the next flush. When the map is full, the least recently seen event is evicted so that it can be
+ * queued for delivery as it is.
+ */
+final class FeatureEventDeduplicator {
+
+    private final LruEventMap<FeatureRequestEvent> events;
+
+    FeatureEventDeduplicator(int capacity) {
+        this.events = new LruEventMap<>(capacity);
+    }
+
+    /**
+     * Records a feature event.
+     *
+     * @return an event that no longer fits in the map and should be queued, or null
+     */
+    @Nullable
+    synchronized FeatureRequestEvent add(@NonNull FeatureRequestEvent event) {
+        LruEventMap.Key key = new LruEventMap.Key(event.key,
+                event.user != null ? event.user.getKey() : event.userKey,
+                event.variation, event.version, event.defaultVal, event.reason);
+        FeatureRequestEvent existing = events.get(key);
+        if (existing != null) {
+            existing.count = existing.count == null ? 2 : existing.count + 1;
+            return null;
+        }
+        return events.put(key, event);
+    }
+
+    /**
+     * Removes and returns the events recorded since the last drain, starting a new flush window.
+     */
+    @NonNull
+    synchronized List<FeatureRequestEvent> drain() {
+        return events.drain();
+    }
+
+    synchronized int size() {
+        return events.size();
+    }
+}
@@ -1,22 +1,33 @@
 package com.launchdarkly.sdk.android;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.launchdarkly.sdk.EvaluationReason;
 import com.launchdarkly.sdk.LDValue;
 
+import java.io.IOException;
+import java.io.StringReader;
+
 class Flag implements FlagUpdate {
 
     @NonNull
     private final String key;
-    private final LDValue value;
+    // value and reason are decoded from rawJson on first access for flags created by fromJson
+    private volatile LDValue value;
     private final Integer version;
     private final Integer flagVersion;
     private final Integer variation;
     private final Boolean trackEvents;
     private final Boolean trackReason;
     private final Long debugEventsUntilDate;
-    private final EvaluationReason reason;
+    private volatile EvaluationReason reason;
+
+    private final transient String rawJson;
+    private transient volatile boolean decoded;
 
     Flag(@NonNull String key, LDValue value, Integer version, Integer flagVersion, Integer variation, Boolean trackEvents, Boolean trackReason, Long debugEventsUntilDate, EvaluationReason reason) {
         this.key = key;
@@ -28,6 +39,117 @@ class Flag implements FlagUpdate {
         this.trackReason = trackReason;
         this.debugEventsUntilDate = debugEventsUntilDate;
         this.reason = reason;
+        this.rawJson = null;
+    }
+
+    private Flag(@NonNull String key, Integer version, Integer flagVersion, Integer variation, Boolean trackEvents, Boolean trackReason, Long debugEventsUntilDate, @NonNull String rawJson) {
+        this.key = key;
+        this.version = version;
+        this.flagVersion = flagVersion;
+        this.variation = variation;
+        this.trackEvents = trackEvents;
+        this.trackReason = trackReason;
+        this.debugEventsUntilDate = debugEventsUntilDate;
+        this.rawJson = rawJson;
+    }
+
+    /**
+     * Creates a flag from its stored JSON representation, reading only the scalar fields. The
+     * value and reason are decoded from the retained JSON the first time they are accessed, so
+     * flags that are loaded but never evaluated do not pay for building their LDValue trees.
+     *
+     * @param json       the flag's JSON representation
+     * @param defaultKey the key to use if the JSON does not contain one
+     * @return the flag
+     * @throws IOException if the JSON is malformed
+     */
+    @NonNull
+    static Flag fromJson(@NonNull String json, @NonNull String defaultKey) throws IOException {
+        String key = defaultKey;
+        Integer version = null, flagVersion = null, variation = null;
+        Boolean trackEvents = null, trackReason = null;
+        Long debugEventsUntilDate = null;
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "key":
+                        key = reader.nextString();
+                        break;
+                    case "version":
+                        version = reader.nextInt();
+                        break;
+                    case "flagVersion":
+                        flagVersion = reader.nextInt();
+                        break;
+                    case "variation":
+                        variation = reader.nextInt();
+                        break;
+                    case "trackEvents":
+                        trackEvents = reader.nextBoolean();
+                        break;
+                    case "trackReason":
+                        trackReason = reader.nextBoolean();
+                        break;
+                    case "debugEventsUntilDate":
+                        debugEventsUntilDate = reader.nextLong();
+                        break;
+                    default:
+                        // value, reason and any unknown properties
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed flag JSON", e);
+        }
+        return new Flag(key, version, flagVersion, variation, trackEvents, trackReason, debugEventsUntilDate, json);
+    }
+
+    private void decodeIfNeeded() {
+        // Flags created by Gson or the constructor have no raw JSON and are already decoded
+        if (rawJson == null || decoded) {
+            return;
+        }
+        synchronized (this) {
+            if (!decoded) {
+                try {
+                    Flag full = GsonCache.getGson().fromJson(rawJson, Flag.class);
+                    reason = full.reason;
+                    value = full.value;
+                } catch (Exception e) {
+                    LDConfig.LOG.w(e, "Unable to decode value of flag %s", key);
+                }
+                decoded = true;
+            }
+        }
+    }
+
+    /**
+     * Returns the JSON representation of the flag, reusing the JSON it was created from if any.
+     */
+    @NonNull
+    String toJson() {
+        return rawJson != null ? rawJson : GsonCache.getGson().toJson(this);
+    }
+
+    /**
+     * Returns the JSON the flag was created from by {@link #fromJson(String, String)}, or null if
+     * it was created some other way.
+     */
+    @Nullable
+    String getRawJson() {
+        return rawJson;
+    }
+
+    @VisibleForTesting
+    boolean isDecoded() {
+        return rawJson == null || decoded;
     }
 
     @NonNull
@@ -37,6 +159,7 @@ class Flag implements FlagUpdate {
 
     @NonNull
     LDValue getValue() {
+        decodeIfNeeded();
         // normalize() ensures that nulls become LDValue.ofNull() - Gson may give us nulls
         return LDValue.normalize(value);
     }
@@ -64,6 +187,7 @@ class Flag implements FlagUpdate {
     }
 
     EvaluationReason getReason() {
+        decodeIfNeeded();
         return reason;
     }
 
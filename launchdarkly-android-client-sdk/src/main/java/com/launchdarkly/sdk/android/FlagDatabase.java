@@ -0,0 +1,61 @@
+package com.launchdarkly.sdk.android;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The SQLite database used by {@link SQLiteFlagStore}. Flags for every environment and cached user
+ * are kept in a single table, keyed by environment, user hash and flag key, with each flag stored
+ * as its JSON representation.
+ */
+class FlagDatabase extends SQLiteOpenHelper {
+
+    static final String DATABASE_NAME = "LaunchDarkly-flags.db";
+    private static final int DATABASE_VERSION = 1;
+
+    static final String TABLE_FLAGS = "flags";
+    static final String COLUMN_ENVIRONMENT = "environment";
+    static final String COLUMN_USER_HASH = "user_hash";
+    static final String COLUMN_FLAG_KEY = "flag_key";
+    static final String COLUMN_FLAG_JSON = "flag_json";
+
+    private static FlagDatabase instance;
+
+    static synchronized FlagDatabase getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new FlagDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private FlagDatabase(@NonNull Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_FLAGS + " ("
+                + COLUMN_ENVIRONMENT + " TEXT NOT NULL, "
+                + COLUMN_USER_HASH + " TEXT NOT NULL, "
+                + COLUMN_FLAG_KEY + " TEXT NOT NULL, "
+                + COLUMN_FLAG_JSON + " TEXT NOT NULL, "
+                + "PRIMARY KEY (" + COLUMN_ENVIRONMENT + ", " + COLUMN_USER_HASH + ", " + COLUMN_FLAG_KEY + "))");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // The flags are a cache of values from LaunchDarkly, so they can be dropped if the schema
+        // changes.
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_FLAGS);
+        onCreate(db);
+    }
+
+    @Override
+    public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        onUpgrade(db, oldVersion, newVersion);
+    }
+}
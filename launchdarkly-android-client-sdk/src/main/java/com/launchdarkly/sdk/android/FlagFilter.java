@@ -0,0 +1,59 @@
+package com.launchdarkly.sdk.android;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides which flags received from LaunchDarkly are kept by the SDK. A flag is kept if its key
+ * is in the allowlist or starts with one of the prefixes. If neither is configured, all flags
+ * are kept. Flags that are not kept are skipped while parsing responses, so they are never
+ * decoded, stored or persisted.
+ */
+final class FlagFilter {
+
+    static final FlagFilter ALL = new FlagFilter(Collections.<String>emptySet(), Collections.<String>emptyList());
+
+    private final Set<String> allowedKeys;
+    private final List<String> allowedPrefixes;
+
+    FlagFilter(@NonNull Collection<String> allowedKeys, @NonNull Collection<String> allowedPrefixes) {
+        this.allowedKeys = Collections.unmodifiableSet(new HashSet<>(allowedKeys));
+        this.allowedPrefixes = Collections.unmodifiableList(new ArrayList<>(allowedPrefixes));
+    }
+
+    boolean isFiltering() {
+        return !allowedKeys.isEmpty() || !allowedPrefixes.isEmpty();
+    }
+
+    boolean accepts(String flagKey) {
+        if (!isFiltering()) {
+            return true;
+        }
+        if (flagKey == null) {
+            return false;
+        }
+        if (allowedKeys.contains(flagKey)) {
+            return true;
+        }
+        for (String prefix : allowedPrefixes) {
+            if (flagKey.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    Set<String> getAllowedKeys() {
+        return allowedKeys;
+    }
+
+    List<String> getAllowedPrefixes() {
+        return allowedPrefixes;
+    }
+}
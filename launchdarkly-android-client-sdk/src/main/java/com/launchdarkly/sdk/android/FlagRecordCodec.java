@@ -0,0 +1,125 @@
+package com.launchdarkly.sdk.android;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.Gson;
+import com.launchdarkly.sdk.EvaluationReason;
+import com.launchdarkly.sdk.LDValue;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Encodes a single {@link Flag} as a compact binary record. The key is stored as length-prefixed
+ * UTF-8, followed by a bitmask of which optional fields are present and then the fields
+ * themselves. The flag value and reason are stored as length-prefixed JSON, since their shape is
+ * arbitrary.
+ * <p>
+ * A flag that still holds the JSON it was loaded from is instead stored as that JSON, so that
+ * writing it does not decode its value and reason. It is read back with
+ * {@link Flag#fromJson(String, String)}, which leaves them to be decoded when first accessed.
+ */
+final class FlagRecordCodec {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int HAS_VALUE = 1;
+    private static final int HAS_VERSION = 1 << 1;
+    private static final int HAS_FLAG_VERSION = 1 << 2;
+    private static final int HAS_VARIATION = 1 << 3;
+    private static final int HAS_TRACK_EVENTS = 1 << 4;
+    private static final int TRACK_EVENTS = 1 << 5;
+    private static final int HAS_TRACK_REASON = 1 << 6;
+    private static final int TRACK_REASON = 1 << 7;
+    private static final int HAS_DEBUG_EVENTS_UNTIL_DATE = 1 << 8;
+    private static final int HAS_REASON = 1 << 9;
+    private static final int RAW_JSON = 1 << 10;
+
+    private FlagRecordCodec() {
+    }
+
+    static void writeFlag(@NonNull DataOutputStream out, @NonNull Flag flag) throws IOException {
+        Gson gson = GsonCache.getGson();
+        writeString(out, flag.getKey());
+        String rawJson = flag.getRawJson();
+        if (rawJson != null) {
+            out.writeShort(RAW_JSON);
+            writeString(out, rawJson);
+            return;
+        }
+
+        LDValue value = flag.getValue();
+        Integer version = flag.getVersion();
+        Integer flagVersion = flag.getFlagVersion();
+        Integer variation = flag.getVariation();
+        Long debugEventsUntilDate = flag.getDebugEventsUntilDate();
+        EvaluationReason reason = flag.getReason();
+
+        int presence = 0;
+        if (!value.isNull()) presence |= HAS_VALUE;
+        if (version != null) presence |= HAS_VERSION;
+        if (flagVersion != null) presence |= HAS_FLAG_VERSION;
+        if (variation != null) presence |= HAS_VARIATION;
+        if (flag.getTrackEvents()) presence |= HAS_TRACK_EVENTS | TRACK_EVENTS;
+        if (flag.isTrackReason()) presence |= HAS_TRACK_REASON | TRACK_REASON;
+        if (debugEventsUntilDate != null) presence |= HAS_DEBUG_EVENTS_UNTIL_DATE;
+        if (reason != null) presence |= HAS_REASON;
+        out.writeShort(presence);
+
+        if (version != null) out.writeInt(version);
+        if (flagVersion != null) out.writeInt(flagVersion);
+        if (variation != null) out.writeInt(variation);
+        if (debugEventsUntilDate != null) out.writeLong(debugEventsUntilDate);
+        if (!value.isNull()) writeString(out, gson.toJson(value, LDValue.class));
+        if (reason != null) writeString(out, gson.toJson(reason, EvaluationReason.class));
+    }
+
+    /**
+     * Reads one record written by {@link #writeFlag(DataOutputStream, Flag)}, starting at the
+     * buffer's current position.
+     *
+     * @throws IOException if the record is truncated or malformed
+     */
+    @NonNull
+    static Flag readFlag(@NonNull ByteBuffer in) throws IOException {
+        try {
+            Gson gson = GsonCache.getGson();
+            String key = readString(in);
+            int presence = in.getShort() & 0xFFFF;
+            if ((presence & RAW_JSON) != 0) {
+                return Flag.fromJson(readString(in), key);
+            }
+            Integer version = (presence & HAS_VERSION) != 0 ? in.getInt() : null;
+            Integer flagVersion = (presence & HAS_FLAG_VERSION) != 0 ? in.getInt() : null;
+            Integer variation = (presence & HAS_VARIATION) != 0 ? in.getInt() : null;
+            Long debugEventsUntilDate = (presence & HAS_DEBUG_EVENTS_UNTIL_DATE) != 0 ? in.getLong() : null;
+            LDValue value = (presence & HAS_VALUE) != 0 ? gson.fromJson(readString(in), LDValue.class) : LDValue.ofNull();
+            EvaluationReason reason = (presence & HAS_REASON) != 0 ? gson.fromJson(readString(in), EvaluationReason.class) : null;
+            Boolean trackEvents = (presence & HAS_TRACK_EVENTS) != 0 ? (presence & TRACK_EVENTS) != 0 : null;
+            Boolean trackReason = (presence & HAS_TRACK_REASON) != 0 ? (presence & TRACK_REASON) != 0 : null;
+            return new Flag(key, value, version, flagVersion, variation, trackEvents, trackReason, debugEventsUntilDate, reason);
+        } catch (BufferUnderflowException | IllegalArgumentException | com.google.gson.JsonParseException e) {
+            throw new IOException("Malformed flag record", e);
+        }
+    }
+
+    static void writeString(@NonNull DataOutputStream out, @NonNull String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @NonNull
+    static String readString(@NonNull ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,233 @@
+package com.launchdarkly.sdk.android;
+
+import android.util.AtomicFile;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A read-only, memory-mapped view of a user's persisted flags, used to serve evaluations on cold
+ * start without decoding the whole flag store.
+ * <p>
+ * The file holds a header (magic number, format version and flag count), an index of
+ * {@code (recordOffset, recordLength)} pairs sorted by the UTF-8 bytes of the flag key, and the
+ * flag records themselves as encoded by {@link FlagRecordCodec}. Since each record begins with
+ * its length-prefixed key, a lookup is a binary search over the index comparing the mapped key
+ * bytes in place, and only the matching record is decoded.
+ */
+final class FlagSnapshot {
+
+    static final int MAGIC = 0x4C44534E; // "LDSN"
+    static final int FORMAT_VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int HEADER_SIZE = 12;
+    private static final int INDEX_ENTRY_SIZE = 8;
+
+    private final ByteBuffer buffer;
+    private final int count;
+
+    private FlagSnapshot(@NonNull ByteBuffer buffer, int count) {
+        this.buffer = buffer;
+        this.count = count;
+    }
+
+    /**
+     * Maps the snapshot file, validating its header and index.
+     *
+     * @return the snapshot, or null if the file does not exist or is not a valid snapshot
+     */
+    @Nullable
+    static FlagSnapshot open(@NonNull AtomicFile atomicFile) {
+        ByteBuffer buffer;
+        try (FileInputStream in = atomicFile.openRead(); FileChannel channel = in.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            LDConfig.LOG.w(e, "Unable to map flag snapshot");
+            return null;
+        }
+        try {
+            return fromBuffer(buffer);
+        } catch (IOException e) {
+            LDConfig.LOG.w(e, "Discarding invalid flag snapshot");
+            atomicFile.delete();
+            return null;
+        }
+    }
+
+    @NonNull
+    static FlagSnapshot fromBuffer(@NonNull ByteBuffer buffer) throws IOException {
+        int size = buffer.limit();
+        if (size < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a flag snapshot");
+        }
+        int formatVersion = buffer.getInt(4);
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported flag snapshot format version " + formatVersion);
+        }
+        int count = buffer.getInt(8);
+        if (count < 0 || count > (size - HEADER_SIZE) / INDEX_ENTRY_SIZE) {
+            throw new IOException("Invalid flag count " + count);
+        }
+        int dataStart = HEADER_SIZE + count * INDEX_ENTRY_SIZE;
+        for (int i = 0; i < count; i++) {
+            int recordOffset = buffer.getInt(HEADER_SIZE + i * INDEX_ENTRY_SIZE);
+            int recordLength = buffer.getInt(HEADER_SIZE + i * INDEX_ENTRY_SIZE + 4);
+            if (recordOffset < dataStart || recordLength < 4 || recordOffset > size - recordLength) {
+                throw new IOException("Invalid flag snapshot index entry " + i);
+            }
+            int keyLength = buffer.getInt(recordOffset);
+            if (keyLength < 0 || keyLength > recordLength - 4) {
+                throw new IOException("Invalid flag snapshot key length " + keyLength);
+            }
+        }
+        return new FlagSnapshot(buffer, count);
+    }
+
+    /**
+     * Atomically replaces the snapshot file with the given flags.
+     *
+     * @return whether the snapshot was written
+     */
+    static boolean write(@NonNull AtomicFile atomicFile, @NonNull Collection<Flag> flags) {
+        FileOutputStream fileOutputStream = null;
+        try {
+            fileOutputStream = atomicFile.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+            encode(out, flags);
+            out.flush();
+            atomicFile.finishWrite(fileOutputStream);
+            return true;
+        } catch (IOException e) {
+            LDConfig.LOG.w(e, "Unable to write flag snapshot");
+            if (fileOutputStream != null) {
+                atomicFile.failWrite(fileOutputStream);
+            }
+            return false;
+        }
+    }
+
+    static void encode(@NonNull DataOutputStream out, @NonNull Collection<Flag> flags) throws IOException {
+        List<Flag> sorted = new ArrayList<>(flags);
+        Collections.sort(sorted, new Comparator<Flag>() {
+            @Override
+            public int compare(Flag a, Flag b) {
+                byte[] aKey = a.getKey().getBytes(UTF_8);
+                byte[] bKey = b.getKey().getBytes(UTF_8);
+                return compareBytes(ByteBuffer.wrap(aKey), 0, aKey.length, bKey);
+            }
+        });
+
+        List<byte[]> records = new ArrayList<>(sorted.size());
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream recordOut = new DataOutputStream(record);
+        for (Flag flag : sorted) {
+            record.reset();
+            FlagRecordCodec.writeFlag(recordOut, flag);
+            recordOut.flush();
+            records.add(record.toByteArray());
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(records.size());
+        int offset = HEADER_SIZE + records.size() * INDEX_ENTRY_SIZE;
+        for (byte[] bytes : records) {
+            out.writeInt(offset);
+            out.writeInt(bytes.length);
+            offset += bytes.length;
+        }
+        for (byte[] bytes : records) {
+            out.write(bytes);
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    boolean containsKey(@NonNull String key) {
+        return indexOf(key.getBytes(UTF_8)) >= 0;
+    }
+
+    /**
+     * Decodes the flag with the given key from the snapshot.
+     *
+     * @return the flag, or null if the snapshot does not contain it or its record is malformed
+     */
+    @Nullable
+    Flag getFlag(@NonNull String key) {
+        int index = indexOf(key.getBytes(UTF_8));
+        if (index < 0) {
+            return null;
+        }
+        int recordOffset = buffer.getInt(HEADER_SIZE + index * INDEX_ENTRY_SIZE);
+        int recordLength = buffer.getInt(HEADER_SIZE + index * INDEX_ENTRY_SIZE + 4);
+        ByteBuffer record = buffer.duplicate();
+        record.limit(recordOffset + recordLength);
+        record.position(recordOffset);
+        try {
+            return FlagRecordCodec.readFlag(record);
+        } catch (IOException e) {
+            LDConfig.LOG.w(e, "Unable to decode flag %s from snapshot", key);
+            return null;
+        }
+    }
+
+    private int indexOf(byte[] key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int recordOffset = buffer.getInt(HEADER_SIZE + mid * INDEX_ENTRY_SIZE);
+            int cmp = compareKeys(buffer, recordOffset, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the length-prefixed key of the record at recordOffset with the given key bytes.
+     */
+    private static int compareKeys(ByteBuffer buffer, int recordOffset, byte[] key) {
+        return compareBytes(buffer, recordOffset + 4, buffer.getInt(recordOffset), key);
+    }
+
+    /**
+     * Compares bytes as unsigned values, which for UTF-8 strings matches code point order.
+     */
+    private static int compareBytes(ByteBuffer a, int aStart, int aLength, byte[] b) {
+        int n = Math.min(aLength, b.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (a.get(aStart + i) & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return aLength - b.length;
+    }
+}
@@ -7,6 +7,7 @@ import androidx.annotation.Nullable;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A FlagStore supports getting individual or collections of flag updates and updating an underlying
@@ -26,6 +27,13 @@ interface FlagStore {
      */
     void clear();
 
+    /**
+     * Serve lookups from a read-only snapshot of the persisted flags, if one is available, until
+     * the store is fully loaded by an update or a call to {@link #getAllFlags()}. This avoids
+     * decoding every stored flag when only a few are evaluated, such as on application start.
+     */
+    void openSnapshot();
+
     /**
      * Returns true if a flag with the key is in the store, otherwise false.
      *
@@ -44,6 +52,16 @@ interface FlagStore {
     @Nullable
     Flag getFlag(String flagKey);
 
+    /**
+     * Get the flags with the given keys from a single consistent view of the store. Keys that are
+     * not stored are omitted from the result.
+     *
+     * @param flagKeys The keys to get the corresponding flags for.
+     * @return A map from flag key to the stored flag.
+     */
+    @NonNull
+    Map<String, Flag> getFlags(@NonNull Collection<String> flagKeys);
+
     /**
      * Apply an individual flag update to the FlagStore.
      *
@@ -132,6 +150,18 @@ interface FlagStoreFactory {
      */
     FlagStore createFlagStore(@NonNull String identifier);
 
+    /**
+     * Delete the backing stores for several identifiers at once. By default each store is created
+     * and deleted in turn; implementations backed by a shared store may do this in one operation.
+     *
+     * @param identifiers identifiers of the stores to delete
+     */
+    default void deleteFlagStores(@NonNull Collection<String> identifiers) {
+        for (String identifier : identifiers) {
+            createFlagStore(identifier).delete();
+        }
+    }
+
 }
 
 /**
@@ -0,0 +1,121 @@
+package com.launchdarkly.sdk.android;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes pending changes from {@link CachedFlagStore}s to their backing stores on a background
+ * thread. Changes are applied to memory immediately, while writes are coalesced: a store is
+ * flushed at most {@link #FLUSH_DELAY_MILLIS} after its first pending change, or as soon as it
+ * has {@link #MAX_PENDING_UPDATES} pending changes. All stores are flushed synchronously when the
+ * application goes to the background and when the client is closed, which are also the checkpoints
+ * at which stale snapshots are rewritten.
+ */
+final class FlagStorePersister implements Foreground.Listener {
+
+    static final long FLUSH_DELAY_MILLIS = 250;
+    static final int MAX_PENDING_UPDATES = 50;
+
+    private static final FlagStorePersister instance = new FlagStorePersister();
+
+    private final Set<CachedFlagStore> dirtyStores = Collections.newSetFromMap(new ConcurrentHashMap<CachedFlagStore, Boolean>());
+    private final Set<CachedFlagStore> staleSnapshotStores = Collections.newSetFromMap(new ConcurrentHashMap<CachedFlagStore, Boolean>());
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    // Set while an immediate flush is waiting to run, so that further changes are coalesced into it
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+    private final ScheduledExecutorService executor;
+
+    private FlagStorePersister() {
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable r) {
+                Thread thread = Executors.defaultThreadFactory().newThread(r);
+                thread.setName("LaunchDarkly-FlagStorePersister");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    static FlagStorePersister getInstance() {
+        return instance;
+    }
+
+    /**
+     * Called by a store after recording a change that has not been written yet.
+     *
+     * @param store          the store with pending changes
+     * @param pendingUpdates the number of changes the store has pending
+     */
+    void markDirty(@NonNull CachedFlagStore store, int pendingUpdates) {
+        dirtyStores.add(store);
+        if (pendingUpdates >= MAX_PENDING_UPDATES) {
+            if (flushQueued.compareAndSet(false, true)) {
+                executor.execute(this::flushAll);
+            }
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            executor.schedule(() -> {
+                flushScheduled.set(false);
+                flushAll();
+            }, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Synchronously writes the pending changes of every store.
+     */
+    void flushAll() {
+        // Changes recorded from here on are not guaranteed to be written by this flush
+        flushQueued.set(false);
+        for (CachedFlagStore store : dirtyStores) {
+            dirtyStores.remove(store);
+            try {
+                store.flush();
+            } catch (Exception e) {
+                LDConfig.LOG.e(e, "Unable to persist flag store");
+            }
+        }
+    }
+
+    /**
+     * Called by a store after a write has removed its snapshot.
+     */
+    void markSnapshotStale(@NonNull CachedFlagStore store) {
+        staleSnapshotStores.add(store);
+    }
+
+    /**
+     * Synchronously writes the pending changes of every store, and rewrites the snapshots that
+     * writes have made stale.
+     */
+    void checkpointAll() {
+        flushAll();
+        for (CachedFlagStore store : staleSnapshotStores) {
+            staleSnapshotStores.remove(store);
+            try {
+                store.checkpoint();
+            } catch (Exception e) {
+                LDConfig.LOG.e(e, "Unable to write flag store snapshot");
+            }
+        }
+    }
+
+    @Override
+    public void onBecameForeground() {
+    }
+
+    @Override
+    public void onBecameBackground() {
+        flushAll();
+        // Snapshots only speed up the next start, so they are written off the main thread
+        executor.execute(this::checkpointAll);
+    }
+}
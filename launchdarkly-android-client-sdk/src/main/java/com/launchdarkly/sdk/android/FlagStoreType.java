@@ -0,0 +1,26 @@
+package com.launchdarkly.sdk.android;
+
+/**
+ * Selects how the SDK persists cached flag values on the device.
+ *
+ * @see LDConfig.Builder#flagStoreType(FlagStoreType)
+ */
+public enum FlagStoreType {
+    /**
+     * Stores each flag as a JSON string in SharedPreferences. This is the default.
+     */
+    SHARED_PREFERENCES,
+    /**
+     * Stores all flags for a user in a single binary file, which is faster to load than
+     * SharedPreferences when there are many flags. Flags cached by earlier SDK versions are
+     * migrated from SharedPreferences on first use.
+     */
+    BINARY_FILE,
+    /**
+     * Stores flags for all environments and cached users as rows of a single SQLite database. This
+     * suits applications with very large flag sets or many cached users, as only changed rows are
+     * written and evicting cached users is a single delete. Flags cached by earlier SDK versions
+     * are migrated from SharedPreferences on first use.
+     */
+    SQLITE
+}
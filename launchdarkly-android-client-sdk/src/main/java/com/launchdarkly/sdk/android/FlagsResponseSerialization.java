@@ -1,13 +1,21 @@
 package com.launchdarkly.sdk.android;
 
+import androidx.annotation.NonNull;
+
+import com.google.gson.Gson;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 class FlagsResponseSerialization implements JsonDeserializer<FlagsResponse> {
@@ -19,13 +27,7 @@ class FlagsResponseSerialization implements JsonDeserializer<FlagsResponse> {
         }
         ArrayList<Flag> flags = new ArrayList<>();
         for (Map.Entry<String, JsonElement> flagJson : o.entrySet()) {
-            String flagKey = flagJson.getKey();
-            JsonElement flagBody = flagJson.getValue();
-            JsonObject flagBodyObject = flagBody.getAsJsonObject();
-            if (flagBodyObject != null) {
-                flagBodyObject.addProperty("key", flagKey);
-            }
-            Flag flag = context.deserialize(flagBodyObject, Flag.class);
+            Flag flag = context.deserialize(withKey(flagJson.getKey(), flagJson.getValue()), Flag.class);
             if (flag != null) {
                 flags.add(flag);
             }
@@ -33,4 +35,64 @@ class FlagsResponseSerialization implements JsonDeserializer<FlagsResponse> {
 
         return new FlagsResponse(flags);
     }
+
+    /**
+     * Deserializes the flags of an already parsed response, skipping flags rejected by the filter.
+     */
+    @NonNull
+    static List<Flag> parseFlags(@NonNull JsonObject json, @NonNull FlagFilter filter) {
+        if (!filter.isFiltering()) {
+            return GsonCache.getGson().fromJson(json, FlagsResponse.class).getFlags();
+        }
+        Gson gson = GsonCache.getGson();
+        ArrayList<Flag> flags = new ArrayList<>();
+        for (Map.Entry<String, JsonElement> flagJson : json.entrySet()) {
+            if (!filter.accepts(flagJson.getKey())) {
+                continue;
+            }
+            Flag flag = gson.fromJson(withKey(flagJson.getKey(), flagJson.getValue()), Flag.class);
+            if (flag != null) {
+                flags.add(flag);
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * Deserializes the flags of a response, skipping over the JSON of flags rejected by the filter
+     * without building a tree for them.
+     */
+    @NonNull
+    static List<Flag> parseFlags(@NonNull String json, @NonNull FlagFilter filter) throws IOException {
+        if (!filter.isFiltering()) {
+            return GsonCache.getGson().fromJson(json, FlagsResponse.class).getFlags();
+        }
+        Gson gson = GsonCache.getGson();
+        TypeAdapter<JsonElement> elementAdapter = gson.getAdapter(JsonElement.class);
+        ArrayList<Flag> flags = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String flagKey = reader.nextName();
+                if (!filter.accepts(flagKey)) {
+                    reader.skipValue();
+                    continue;
+                }
+                Flag flag = gson.fromJson(withKey(flagKey, elementAdapter.read(reader)), Flag.class);
+                if (flag != null) {
+                    flags.add(flag);
+                }
+            }
+            reader.endObject();
+        }
+        return flags;
+    }
+
+    private static JsonElement withKey(String flagKey, JsonElement flagBody) {
+        JsonObject flagBodyObject = flagBody.getAsJsonObject();
+        if (flagBodyObject != null) {
+            flagBodyObject.addProperty("key", flagKey);
+        }
+        return flagBodyObject;
+    }
 }
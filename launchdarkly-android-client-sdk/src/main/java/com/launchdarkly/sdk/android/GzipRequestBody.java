@@ -0,0 +1,55 @@
+package com.launchdarkly.sdk.android;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * A request body that gzip-compresses another body as it is written, for requests sent with a
+ * {@code Content-Encoding: gzip} header. The number of bytes before and after compression of the
+ * most recent write are kept for diagnostics.
+ */
+final class GzipRequestBody extends RequestBody {
+
+    static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+    static final String GZIP = "gzip";
+
+    private final RequestBody delegate;
+    private volatile long rawBytes;
+    private volatile long compressedBytes;
+
+    GzipRequestBody(@NonNull RequestBody delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public void writeTo(@NonNull BufferedSink sink) throws IOException {
+        CountingSink compressed = new CountingSink(sink);
+        CountingSink raw = new CountingSink(new GzipSink(compressed));
+        BufferedSink gzipSink = Okio.buffer(raw);
+        delegate.writeTo(gzipSink);
+        // Writes the gzip trailer
+        gzipSink.close();
+        rawBytes = raw.getCount();
+        compressedBytes = compressed.getCount();
+    }
+
+    long getRawBytes() {
+        return rawBytes;
+    }
+
+    long getCompressedBytes() {
+        return compressedBytes;
+    }
+}
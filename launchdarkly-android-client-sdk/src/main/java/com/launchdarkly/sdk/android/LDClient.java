@@ -7,12 +7,14 @@ import android.content.SharedPreferences;
 import android.os.Build;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import com.launchdarkly.sdk.EvaluationDetail;
 import com.launchdarkly.sdk.EvaluationReason;
 import com.launchdarkly.sdk.LDUser;
 import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.LDValueType;
 import com.launchdarkly.sdk.UserAttribute;
 
 import java.io.Closeable;
@@ -54,6 +56,7 @@ public class LDClient implements LDClientInterface, Closeable {
     private final DefaultUserManager userManager;
     private final DefaultEventProcessor eventProcessor;
     private final ConnectivityManager connectivityManager;
+    private final Foreground.Listener summaryCheckpointListener;
     private final DiagnosticEventProcessor diagnosticEventProcessor;
     private final DiagnosticStore diagnosticStore;
     private ConnectivityReceiver connectivityReceiver;
@@ -104,6 +107,9 @@ public class LDClient implements LDClientInterface, Closeable {
         }
 
         Foreground.init(application);
+        // Write any pending flag changes before the process may be killed in the background
+        Foreground.get(application).removeListener(FlagStorePersister.getInstance());
+        Foreground.get(application).addListener(FlagStorePersister.getInstance());
 
         instances = new HashMap<>();
 
@@ -251,11 +257,25 @@ public class LDClient implements LDClientInterface, Closeable {
             this.diagnosticStore = new DiagnosticStore(application, sdkKey);
             this.diagnosticEventProcessor = new DiagnosticEventProcessor(config, environmentName, diagnosticStore, application, sharedEventClient);
         }
-        this.userManager = DefaultUserManager.newInstance(application, fetcher, environmentName, sdkKey, config.getMaxCachedUsers());
+        this.userManager = DefaultUserManager.newInstance(application, fetcher, environmentName, sdkKey, config.getMaxCachedUsers(), config.getFlagStoreType(), config.getFlagFilter());
 
         eventProcessor = new DefaultEventProcessor(application, config, userManager.getSummaryEventStore(), environmentName, diagnosticStore, sharedEventClient);
         connectivityManager = new ConnectivityManager(application, config, eventProcessor, userManager, environmentName, diagnosticStore);
 
+        // Summary counters are aggregated in memory, so write them out before the process may be
+        // killed in the background
+        summaryCheckpointListener = new Foreground.Listener() {
+            @Override
+            public void onBecameForeground() {
+            }
+
+            @Override
+            public void onBecameBackground() {
+                userManager.getSummaryEventStore().checkpoint();
+            }
+        };
+        Foreground.get(application).addListener(summaryCheckpointListener);
+
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
             connectivityReceiver = new ConnectivityReceiver();
             IntentFilter filter = new IntentFilter(ConnectivityReceiver.CONNECTIVITY_CHANGE);
@@ -350,6 +370,14 @@ public class LDClient implements LDClientInterface, Closeable {
 
     @Override
     public boolean boolVariation(@NonNull String key, boolean defaultValue) {
+        Flag flag = primitiveFastPathFlag(userManager.getCurrentUserFlagStore(), key, LDValueType.BOOLEAN, eventProcessor.getCurrentTimeMs());
+        if (flag != null) {
+            LDValue value = flag.getValue();
+            if (!userManager.getSummaryEventStore().updateExistingEvent(key, value, flag.getVersionForEvents(), flag.getVariation())) {
+                updateSummaryEvents(key, flag, value, LDValue.of(defaultValue));
+            }
+            return value.booleanValue();
+        }
         return variationDetailInternal(key, LDValue.of(defaultValue), true, false).getValue().booleanValue();
     }
 
@@ -360,6 +388,14 @@ public class LDClient implements LDClientInterface, Closeable {
 
     @Override
     public int intVariation(@NonNull String key, int defaultValue) {
+        Flag flag = primitiveFastPathFlag(userManager.getCurrentUserFlagStore(), key, LDValueType.NUMBER, eventProcessor.getCurrentTimeMs());
+        if (flag != null) {
+            LDValue value = flag.getValue();
+            if (!userManager.getSummaryEventStore().updateExistingEvent(key, value, flag.getVersionForEvents(), flag.getVariation())) {
+                updateSummaryEvents(key, flag, value, LDValue.of(defaultValue));
+            }
+            return value.intValue();
+        }
         return variationDetailInternal(key, LDValue.of(defaultValue), true, false).getValue().intValue();
     }
 
@@ -370,6 +406,14 @@ public class LDClient implements LDClientInterface, Closeable {
 
     @Override
     public double doubleVariation(String flagKey, double defaultValue) {
+        Flag flag = primitiveFastPathFlag(userManager.getCurrentUserFlagStore(), flagKey, LDValueType.NUMBER, eventProcessor.getCurrentTimeMs());
+        if (flag != null) {
+            LDValue value = flag.getValue();
+            if (!userManager.getSummaryEventStore().updateExistingEvent(flagKey, value, flag.getVersionForEvents(), flag.getVariation())) {
+                updateSummaryEvents(flagKey, flag, value, LDValue.of(defaultValue));
+            }
+            return value.doubleValue();
+        }
         return variationDetailInternal(flagKey, LDValue.of(defaultValue), true, false).getValue().doubleValue();
     }
 
@@ -398,10 +442,75 @@ public class LDClient implements LDClientInterface, Closeable {
         return variationDetailInternal(key, LDValue.normalize(defaultValue), false, true);
     }
 
+    @Override
+    public LDFlagValues variations(@NonNull Map<String, LDValue> flagKeysWithDefaults) {
+        Map<String, Flag> flags = userManager.getCurrentUserFlagStore().getFlags(flagKeysWithDefaults.keySet());
+        Map<String, LDValue> values = new HashMap<>();
+        List<SummaryEventStore.Evaluation> evaluations = new ArrayList<>(flagKeysWithDefaults.size());
+        List<String> unknownKeys = null;
+
+        for (Map.Entry<String, LDValue> entry : flagKeysWithDefaults.entrySet()) {
+            String key = entry.getKey();
+            LDValue defaultValue = LDValue.normalize(entry.getValue());
+            Flag flag = flags.get(key);
+            LDValue value = defaultValue;
+            if (flag == null) {
+                if (unknownKeys == null) {
+                    unknownKeys = new ArrayList<>();
+                }
+                unknownKeys.add(key);
+            } else {
+                LDValue flagValue = flag.getValue();
+                EvaluationReason reason = flag.getReason();
+                if (!defaultValue.isNull() && !flagValue.isNull() && flagValue.getType() != defaultValue.getType()) {
+                    reason = EvaluationReason.error(EvaluationReason.ErrorKind.WRONG_TYPE);
+                } else if (!flagValue.isNull()) {
+                    value = flagValue;
+                }
+                sendFlagRequestEvent(key, flag, value, defaultValue, flag.isTrackReason() ? reason : null);
+            }
+            values.put(key, value);
+            evaluations.add(new SummaryEventStore.Evaluation(key, value, defaultValue,
+                    flag == null ? null : flag.getVersionForEvents(), flag == null ? null : flag.getVariation()));
+        }
+
+        if (unknownKeys != null) {
+            LDConfig.LOG.i("Unknown feature flags %s; returning default values", unknownKeys);
+        }
+        LDConfig.LOG.d("returning %d variations user key: %s", values.size(), userManager.getCurrentUser().getKey());
+        userManager.getSummaryEventStore().addOrUpdateEvents(evaluations);
+        return new LDFlagValues(values);
+    }
+
     private <T> EvaluationDetail<T> convertDetailType(EvaluationDetail<LDValue> detail, LDValue.Converter<T> converter) {
         return EvaluationDetail.fromValue(converter.toType(detail.getValue()), detail.getVariationIndex(), detail.getReason());
     }
 
+    /**
+     * Returns the stored flag if a primitive variation of the given type can be answered directly
+     * from its value, without building an {@link EvaluationDetail} or sending a feature event.
+     * This is the case when the flag exists, has a value of the expected type, and neither full
+     * event tracking nor an active debugging window require a feature event.
+     *
+     * @param flagStore    The current user's flag store
+     * @param flagKey      The key of the flag being evaluated
+     * @param type         The type of the default value for the variation
+     * @param serverTimeMs The last known time on the LaunchDarkly server
+     * @return The flag to answer from, or null if the full evaluation path must be used
+     */
+    @Nullable
+    static Flag primitiveFastPathFlag(@NonNull FlagStore flagStore, @NonNull String flagKey, @NonNull LDValueType type, long serverTimeMs) {
+        Flag flag = flagStore.getFlag(flagKey);
+        if (flag == null || flag.getTrackEvents() || flag.getValue().getType() != type) {
+            return null;
+        }
+        Long debugEventsUntilDate = flag.getDebugEventsUntilDate();
+        if (debugEventsUntilDate != null && debugEventsUntilDate > System.currentTimeMillis() && debugEventsUntilDate > serverTimeMs) {
+            return null;
+        }
+        return flag;
+    }
+
     private EvaluationDetail<LDValue> variationDetailInternal(@NonNull String key, @NonNull LDValue defaultValue, boolean checkType, boolean needsReason) {
         Flag flag = userManager.getCurrentUserFlagStore().getFlag(key);
         EvaluationDetail<LDValue> result;
@@ -445,6 +554,8 @@ public class LDClient implements LDClientInterface, Closeable {
     private void closeInternal() {
         connectivityManager.shutdown();
         eventProcessor.close();
+        Foreground.get(application).removeListener(summaryCheckpointListener);
+        userManager.getSummaryEventStore().checkpoint();
 
         if (diagnosticEventProcessor != null) {
             diagnosticEventProcessor.close();
@@ -460,6 +571,7 @@ public class LDClient implements LDClientInterface, Closeable {
         for (LDClient client : instances.values()) {
             client.closeInternal();
         }
+        FlagStorePersister.getInstance().checkpointAll();
     }
 
     @Override
@@ -7,6 +7,7 @@ import com.launchdarkly.sdk.LDUser;
 import com.launchdarkly.sdk.LDValue;
 
 import java.io.Closeable;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Future;
 
@@ -254,6 +255,32 @@ public interface LDClientInterface extends Closeable {
      */
     EvaluationDetail<LDValue> jsonValueVariationDetail(String flagKey, LDValue defaultValue);
 
+    /**
+     * Returns the values of several flags for the current user, read from a single consistent view
+     * of the flag store. Each flag is evaluated as with {@link #jsonValueVariation(String, LDValue)},
+     * except that if its default value is not null and the flag's value has a different type, the
+     * default value is returned, as with the typed variation methods. Events are recorded for each
+     * flag as if it had been evaluated individually.
+     * <p>
+     * The default implementation calls {@link #jsonValueVariation(String, LDValue)} for each flag,
+     * so implementations written before this method was added keep working.
+     *
+     * @param flagKeysWithDefaults map from the key of each flag to evaluate to its default value
+     * @return the values of the requested flags, with typed getters
+     */
+    default LDFlagValues variations(Map<String, LDValue> flagKeysWithDefaults) {
+        Map<String, LDValue> values = new HashMap<>();
+        for (Map.Entry<String, LDValue> entry : flagKeysWithDefaults.entrySet()) {
+            LDValue defaultValue = LDValue.normalize(entry.getValue());
+            LDValue value = LDValue.normalize(jsonValueVariation(entry.getKey(), defaultValue));
+            if (!defaultValue.isNull() && !value.isNull() && value.getType() != defaultValue.getType()) {
+                value = defaultValue;
+            }
+            values.put(entry.getKey(), value);
+        }
+        return new LDFlagValues(values);
+    }
+
     /**
      * Unregisters a {@link FeatureFlagChangeListener} for the <code>flagKey</code>.
      *
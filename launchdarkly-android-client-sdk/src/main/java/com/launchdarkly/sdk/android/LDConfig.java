@@ -51,6 +51,8 @@ public class LDConfig {
     static final int MIN_POLLING_INTERVAL_MILLIS = 300_000; // 5 minutes
     static final int DEFAULT_DIAGNOSTIC_RECORDING_INTERVAL_MILLIS = 900_000; // 15 minutes
     static final int MIN_DIAGNOSTIC_RECORDING_INTERVAL_MILLIS = 300_000; // 5 minutes
+    static final int DEFAULT_EVENTS_RETRY_CAPACITY_BYTES = 1_048_576; // 1 MiB
+    static final int DEFAULT_EVENTS_SPILL_CAPACITY_BYTES = 1_048_576; // 1 MiB
 
     private final Map<String, String> mobileKeys;
 
@@ -88,6 +90,21 @@ public class LDConfig {
 
     private final boolean autoAliasingOptOut;
 
+    private final FlagStoreType flagStoreType;
+
+    private final FlagFilter flagFilter;
+
+    private final int eventsDiskCapacityBytes;
+    private final boolean compressEvents;
+    private final int eventsFlushHighWaterMark;
+    private final int featureEventDeduplicationCapacity;
+    private final boolean userIndexEvents;
+    private final int eventsRetryCapacityBytes;
+    private final EventOverflowPolicy eventsOverflowPolicy;
+    private final int eventsCapacityBytes;
+    private final int metricEventAggregationCapacity;
+    private final int eventsMaxPayloadBytes;
+
     LDConfig(Map<String, String> mobileKeys,
              Uri pollUri,
              Uri eventsUri,
@@ -111,7 +128,19 @@ public class LDConfig {
              String wrapperVersion,
              int maxCachedUsers,
              LDHeaderUpdater headerTransform,
-             boolean autoAliasingOptOut) {
+             boolean autoAliasingOptOut,
+             FlagStoreType flagStoreType,
+             FlagFilter flagFilter,
+             int eventsDiskCapacityBytes,
+             boolean compressEvents,
+             int eventsFlushHighWaterMark,
+             int featureEventDeduplicationCapacity,
+             boolean userIndexEvents,
+             int eventsRetryCapacityBytes,
+             EventOverflowPolicy eventsOverflowPolicy,
+             int eventsCapacityBytes,
+             int metricEventAggregationCapacity,
+             int eventsMaxPayloadBytes) {
 
         this.mobileKeys = mobileKeys;
         this.pollUri = pollUri;
@@ -137,6 +166,18 @@ public class LDConfig {
         this.maxCachedUsers = maxCachedUsers;
         this.headerTransform = headerTransform;
         this.autoAliasingOptOut = autoAliasingOptOut;
+        this.flagStoreType = flagStoreType;
+        this.flagFilter = flagFilter;
+        this.eventsDiskCapacityBytes = eventsDiskCapacityBytes;
+        this.compressEvents = compressEvents;
+        this.eventsFlushHighWaterMark = eventsFlushHighWaterMark;
+        this.featureEventDeduplicationCapacity = featureEventDeduplicationCapacity;
+        this.userIndexEvents = userIndexEvents;
+        this.eventsRetryCapacityBytes = eventsRetryCapacityBytes;
+        this.eventsOverflowPolicy = eventsOverflowPolicy;
+        this.eventsCapacityBytes = eventsCapacityBytes;
+        this.metricEventAggregationCapacity = metricEventAggregationCapacity;
+        this.eventsMaxPayloadBytes = eventsMaxPayloadBytes;
 
         this.filteredEventGson = new GsonBuilder()
                 .registerTypeAdapter(LDUser.class, new LDUtil.LDUserPrivateAttributesTypeAdapter(this))
@@ -282,6 +323,54 @@ public class LDConfig {
         return autoAliasingOptOut;
     }
 
+    FlagStoreType getFlagStoreType() {
+        return flagStoreType;
+    }
+
+    FlagFilter getFlagFilter() {
+        return flagFilter;
+    }
+
+    int getEventsDiskCapacityBytes() {
+        return eventsDiskCapacityBytes;
+    }
+
+    boolean isCompressEvents() {
+        return compressEvents;
+    }
+
+    int getEventsFlushHighWaterMark() {
+        return eventsFlushHighWaterMark;
+    }
+
+    int getFeatureEventDeduplicationCapacity() {
+        return featureEventDeduplicationCapacity;
+    }
+
+    boolean isUserIndexEvents() {
+        return userIndexEvents;
+    }
+
+    int getEventsRetryCapacityBytes() {
+        return eventsRetryCapacityBytes;
+    }
+
+    EventOverflowPolicy getEventsOverflowPolicy() {
+        return eventsOverflowPolicy;
+    }
+
+    int getEventsCapacityBytes() {
+        return eventsCapacityBytes;
+    }
+
+    int getMetricEventAggregationCapacity() {
+        return metricEventAggregationCapacity;
+    }
+
+    int getEventsMaxPayloadBytes() {
+        return eventsMaxPayloadBytes;
+    }
+
     /**
      * A <a href="http://en.wikipedia.org/wiki/Builder_pattern">builder</a> that helps construct
      * {@link LDConfig} objects. Builder calls can be chained, enabling the following pattern:
@@ -324,6 +413,19 @@ public class LDConfig {
         private String wrapperVersion;
         private LDHeaderUpdater headerTransform;
         private boolean autoAliasingOptOut = false;
+        private FlagStoreType flagStoreType = FlagStoreType.SHARED_PREFERENCES;
+        private Set<String> flagKeyAllowlist = new HashSet<>();
+        private Set<String> flagKeyPrefixes = new HashSet<>();
+        private int eventsDiskCapacityBytes = 0;
+        private boolean compressEvents = false;
+        private int eventsFlushHighWaterMark = 0;
+        private int featureEventDeduplicationCapacity = 0;
+        private boolean userIndexEvents = false;
+        private int eventsRetryCapacityBytes = DEFAULT_EVENTS_RETRY_CAPACITY_BYTES;
+        private EventOverflowPolicy eventsOverflowPolicy = EventOverflowPolicy.DROP_NEWEST;
+        private int eventsCapacityBytes = 0;
+        private int metricEventAggregationCapacity = 0;
+        private int eventsMaxPayloadBytes = 0;
 
         /**
          * Specifies that user attributes (other than the key) should be hidden from LaunchDarkly.
@@ -470,6 +572,89 @@ public class LDConfig {
             return this;
         }
 
+        /**
+         * Collapses repeated feature events within each flush interval. Flags with event tracking
+         * enabled produce a feature event for every evaluation; with this option, evaluations that
+         * would produce identical events, for the same user, flag, variation and version, are
+         * sent as a single event with a {@code count} of the evaluations it stands for.
+         * <p>
+         * Distinct events are held in memory until the next flush, up to the given number. Beyond
+         * that, the least recently seen event is queued as it is. With
+         * {@link #eventsDiskCapacityBytes(int)}, held events are written to the disk queue at the
+         * end of each flush interval, whether or not the SDK is online, so an event may be lost
+         * only if the process ends within the interval it was recorded in.
+         * <p>
+         * The default value is 0, which sends an event for every evaluation.
+         *
+         * @param featureEventDeduplicationCapacity the maximum number of distinct feature events to
+         *                                          hold, or 0 to disable deduplication
+         * @return the builder
+         */
+        public LDConfig.Builder featureEventDeduplicationCapacity(int featureEventDeduplicationCapacity) {
+            this.featureEventDeduplicationCapacity = Math.max(featureEventDeduplicationCapacity, 0);
+            return this;
+        }
+
+        /**
+         * Enables adaptive event flushing. When the given number of events have been recorded
+         * since the last flush, they are sent straight away rather than at the end of the flush
+         * interval, so that bursts of events are less likely to exceed
+         * {@link #eventsCapacity(int)} and be dropped. Also, while there is nothing to send, the
+         * interval between flushes is doubled after each flush, up to eight times
+         * {@link #eventsFlushIntervalMillis(int)}, so that an idle application wakes the radio
+         * less often. The configured interval is restored as soon as another event is recorded.
+         * <p>
+         * The value should be lower than the events capacity. The default value is 0, which
+         * disables adaptive flushing.
+         *
+         * @param eventsFlushHighWaterMark the number of pending events that triggers a flush, or 0
+         *                                 to only flush at the configured interval
+         * @return the builder
+         * @see #eventsCapacity(int)
+         */
+        public LDConfig.Builder eventsFlushHighWaterMark(int eventsFlushHighWaterMark) {
+            this.eventsFlushHighWaterMark = Math.max(eventsFlushHighWaterMark, 0);
+            return this;
+        }
+
+        /**
+         * Keeps pending analytics events in a queue on the device's storage rather than only in
+         * memory, so that events recorded shortly before the application process is killed are
+         * sent when the SDK is next started. Events are recorded in memory, within
+         * {@link #eventsCapacity(int)}, and appended to the queue in batches on a background
+         * thread shortly after, so that recording an event does not write to storage. They are
+         * removed once LaunchDarkly has accepted them. If the queue grows beyond
+         * the given number of bytes, for instance while the device is offline, the oldest events
+         * are discarded.
+         * <p>
+         * The default value is 0, which disables the queue.
+         *
+         * @param eventsDiskCapacityBytes the maximum size of the queue in bytes, or 0 to keep
+         *                                events only in memory
+         * @return the builder
+         * @see #eventsCapacity(int)
+         */
+        public LDConfig.Builder eventsDiskCapacityBytes(int eventsDiskCapacityBytes) {
+            this.eventsDiskCapacityBytes = Math.max(eventsDiskCapacityBytes, 0);
+            return this;
+        }
+
+        /**
+         * If enabled, analytics and diagnostic events are gzip-compressed when they are sent to
+         * LaunchDarkly, with a {@code Content-Encoding: gzip} header. Event payloads repeat flag
+         * keys and user attributes heavily, so this typically reduces their size several times
+         * over, at the cost of some CPU time when events are flushed. Only enable this if the
+         * events URI set with {@link #eventsUri(Uri)} accepts compressed requests.
+         * <p>
+         * The default value is false.
+         *
+         * @param compressEvents true if event payloads should be compressed
+         * @return the builder
+         */
+        public LDConfig.Builder compressEvents(boolean compressEvents) {
+            this.compressEvents = compressEvents;
+            return this;
+        }
 
         /**
          * Sets the timeout when connecting to LaunchDarkly.
@@ -571,6 +756,125 @@ public class LDConfig {
             return this;
         }
 
+        /**
+         * If enabled, feature and custom events that would include the entire User object, because
+         * {@link #inlineUsersInEvents(boolean)} is enabled, instead include only the user key. The
+         * User object is sent once in each event payload, in an index event that precedes the
+         * first event for the user, or in the user's identify event. This reduces the size of event
+         * payloads and the time spent serializing them while keeping all user properties available
+         * to LaunchDarkly. Debug events, and events kept on disk by
+         * {@link #eventsDiskCapacityBytes(int)}, always include the entire User object.
+         * <p>
+         * The default value is false.
+         *
+         * @param userIndexEvents true if users should be sent once per batch in index events
+         * @return the builder
+         */
+        public LDConfig.Builder userIndexEvents(boolean userIndexEvents) {
+            this.userIndexEvents = userIndexEvents;
+            return this;
+        }
+
+        /**
+         * Sets the maximum total size, in bytes, of event payloads that are kept in memory to be
+         * retried after they could not be delivered. Failed payloads are retried with an increasing
+         * delay, and payloads flushed while a retry is pending wait behind it. When the limit is
+         * exceeded, the oldest payloads are discarded. Events that are also held on disk by
+         * {@link #eventsDiskCapacityBytes(int)} are not lost, and are sent again in a later flush.
+         * Other events stored alongside them on disk may then be sent more than once, even if the
+         * payload they were in was delivered.
+         * <p>
+         * The default value is 1 MiB (1,048,576 bytes). A value of 0 discards
+         * payloads that could not be delivered without retrying them.
+         *
+         * @param eventsRetryCapacityBytes the maximum size of payloads waiting to be retried
+         * @return the builder
+         */
+        public LDConfig.Builder eventsRetryCapacityBytes(int eventsRetryCapacityBytes) {
+            this.eventsRetryCapacityBytes = Math.max(eventsRetryCapacityBytes, 0);
+            return this;
+        }
+
+        /**
+         * Sets which events are discarded when the in-memory event queue is full.
+         * <p>
+         * With {@link EventOverflowPolicy#SPILL_TO_DISK}, events that do not fit in memory are
+         * written to a queue on the device's storage of the size set by
+         * {@link #eventsDiskCapacityBytes(int)}, or of 1 MiB if that is not set. Other policies have
+         * no effect when {@link #eventsDiskCapacityBytes(int)} is set, as all events are then kept
+         * on disk.
+         * <p>
+         * The default value is {@link EventOverflowPolicy#DROP_NEWEST}.
+         *
+         * @param eventsOverflowPolicy the policy for a full event queue
+         * @return the builder
+         * @see #eventsCapacity(int)
+         * @see #eventsCapacityBytes(int)
+         */
+        public LDConfig.Builder eventsOverflowPolicy(EventOverflowPolicy eventsOverflowPolicy) {
+            this.eventsOverflowPolicy = eventsOverflowPolicy == null ? EventOverflowPolicy.DROP_NEWEST : eventsOverflowPolicy;
+            return this;
+        }
+
+        /**
+         * Bounds the in-memory event queue by the estimated serialized size of its events instead
+         * of by their number, so that a few events with large custom data cannot take up more
+         * memory than intended. When set, {@link #eventsCapacity(int)} no longer limits the queue.
+         * <p>
+         * The default value is 0, which bounds the queue by {@link #eventsCapacity(int)}.
+         *
+         * @param eventsCapacityBytes the maximum estimated size of queued events in bytes, or 0
+         * @return the builder
+         * @see #eventsOverflowPolicy(EventOverflowPolicy)
+         */
+        public LDConfig.Builder eventsCapacityBytes(int eventsCapacityBytes) {
+            this.eventsCapacityBytes = Math.max(eventsCapacityBytes, 0);
+            return this;
+        }
+
+        /**
+         * Aggregates metric events, recorded with {@link LDClient#trackMetric(String, com.launchdarkly.sdk.LDValue, double)},
+         * within each flush interval. Metric events for the same event name, user and data are sent
+         * as a single event with the {@code count}, {@code metricSum}, {@code metricMin} and
+         * {@code metricMax} of their metric values, and the mean of the values as its
+         * {@code metricValue}. This keeps the event queue and payloads small for metrics that are
+         * recorded very often.
+         * <p>
+         * Aggregates are held in memory until the next flush, up to the given number. Beyond that,
+         * the least recently updated aggregate is queued as it is. With
+         * {@link #eventsDiskCapacityBytes(int)}, aggregates are written to the disk queue at the
+         * end of each flush interval, whether or not the SDK is online.
+         * <p>
+         * The default value is 0, which sends an event for every call.
+         *
+         * @param metricEventAggregationCapacity the maximum number of distinct metric events to
+         *                                       aggregate, or 0 to disable aggregation
+         * @return the builder
+         * @see #featureEventDeduplicationCapacity(int)
+         */
+        public LDConfig.Builder metricEventAggregationCapacity(int metricEventAggregationCapacity) {
+            this.metricEventAggregationCapacity = Math.max(metricEventAggregationCapacity, 0);
+            return this;
+        }
+
+        /**
+         * Limits the size of each request that sends analytics events. Events flushed together
+         * that would exceed the limit, for instance after a long time offline with a raised
+         * {@link #eventsCapacity(int)}, are split across several requests. These are sent in
+         * order, and each one is retried on its own if it fails. An event larger than the limit
+         * is sent in a request by itself.
+         * <p>
+         * The default value is 0, which sends all events flushed together in one request.
+         *
+         * @param eventsMaxPayloadBytes the maximum size of an event payload in bytes, or 0 for no
+         *                              limit
+         * @return the builder
+         */
+        public LDConfig.Builder eventsMaxPayloadBytes(int eventsMaxPayloadBytes) {
+            this.eventsMaxPayloadBytes = Math.max(eventsMaxPayloadBytes, 0);
+            return this;
+        }
+
         /**
          * If enabled, LaunchDarkly will provide additional information about how flag values were
          * calculated. The additional information will then be available through the client's
@@ -673,6 +977,56 @@ public class LDConfig {
             return this;
         }
 
+        /**
+         * Sets how cached flag values are persisted on the device. The default is
+         * {@link FlagStoreType#SHARED_PREFERENCES}.
+         * <p>
+         * {@link FlagStoreType#BINARY_FILE} keeps all flags for a user in a single file, which
+         * reduces the cost of loading the cache for applications with many flags. Values cached
+         * in SharedPreferences by earlier SDK versions are migrated automatically.
+         * {@link FlagStoreType#SQLITE} keeps flags for all cached users in one SQLite database,
+         * writing only the rows of changed flags.
+         *
+         * @param flagStoreType the storage mechanism to use, or null for the default
+         * @return the builder
+         */
+        public LDConfig.Builder flagStoreType(FlagStoreType flagStoreType) {
+            this.flagStoreType = flagStoreType == null ? FlagStoreType.SHARED_PREFERENCES : flagStoreType;
+            return this;
+        }
+
+        /**
+         * Restricts the flags kept by the SDK to the given keys. Flags received from LaunchDarkly
+         * that are neither in this allowlist nor match a prefix given to
+         * {@link #flagKeyPrefixes(String...)} are dropped when the response is parsed, so they are
+         * not stored on the device and evaluating them returns the default value. By default, all
+         * flags are kept.
+         * <p>
+         * This is useful when an environment contains many flags that the application never
+         * evaluates, as it reduces the memory, storage and parsing cost of the flag cache.
+         *
+         * @param flagKeys the keys of the flags to keep
+         * @return the builder
+         */
+        public LDConfig.Builder flagKeyAllowlist(String... flagKeys) {
+            this.flagKeyAllowlist = new HashSet<>(Arrays.asList(flagKeys));
+            return this;
+        }
+
+        /**
+         * Restricts the flags kept by the SDK to those with keys starting with one of the given
+         * prefixes. Flags received from LaunchDarkly that neither match a prefix nor are in the
+         * allowlist given to {@link #flagKeyAllowlist(String...)} are dropped when the response is
+         * parsed. By default, all flags are kept.
+         *
+         * @param prefixes the key prefixes of the flags to keep
+         * @return the builder
+         */
+        public LDConfig.Builder flagKeyPrefixes(String... prefixes) {
+            this.flagKeyPrefixes = new HashSet<>(Arrays.asList(prefixes));
+            return this;
+        }
+
         /**
          * Provides a callback for dynamically modifying headers used on requests to the LaunchDarkly service.
          *
@@ -755,7 +1109,19 @@ public class LDConfig {
                     wrapperVersion,
                     maxCachedUsers,
                     headerTransform,
-                    autoAliasingOptOut);
+                    autoAliasingOptOut,
+                    flagStoreType,
+                    new FlagFilter(flagKeyAllowlist, flagKeyPrefixes),
+                    eventsDiskCapacityBytes,
+                    compressEvents,
+                    eventsFlushHighWaterMark,
+                    featureEventDeduplicationCapacity,
+                    userIndexEvents,
+                    eventsRetryCapacityBytes,
+                    eventsOverflowPolicy,
+                    eventsCapacityBytes,
+                    metricEventAggregationCapacity,
+                    eventsMaxPayloadBytes);
         }
     }
 }
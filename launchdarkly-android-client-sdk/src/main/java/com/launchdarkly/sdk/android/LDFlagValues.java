@@ -0,0 +1,104 @@
+package com.launchdarkly.sdk.android;
+
+import androidx.annotation.NonNull;
+
+import com.launchdarkly.sdk.LDValue;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The result of evaluating several flags at once with {@link LDClientInterface#variations(Map)}.
+ * Each requested flag key maps to the evaluated value, or to the default value supplied for it
+ * if the flag could not be evaluated.
+ */
+public final class LDFlagValues {
+
+    private final Map<String, LDValue> values;
+
+    LDFlagValues(@NonNull Map<String, LDValue> values) {
+        this.values = values;
+    }
+
+    /**
+     * Returns true if the flag key was part of the request.
+     *
+     * @param flagKey the key of the flag
+     * @return whether a value is present for the flag
+     */
+    public boolean contains(String flagKey) {
+        return values.containsKey(flagKey);
+    }
+
+    /**
+     * Returns the value of a flag. If the flag key was not part of the request, this is
+     * {@link LDValue#ofNull()}.
+     *
+     * @param flagKey the key of the flag
+     * @return the value of the flag; never null
+     */
+    @NonNull
+    public LDValue getValue(String flagKey) {
+        return LDValue.normalize(values.get(flagKey));
+    }
+
+    /**
+     * Returns the value of a flag as a boolean, or false if the value is not a boolean.
+     *
+     * @param flagKey the key of the flag
+     * @return the value of the flag
+     */
+    public boolean getBoolean(String flagKey) {
+        return getValue(flagKey).booleanValue();
+    }
+
+    /**
+     * Returns the value of a flag as an int, rounding towards zero, or 0 if the value is not a
+     * number.
+     *
+     * @param flagKey the key of the flag
+     * @return the value of the flag
+     */
+    public int getInt(String flagKey) {
+        return getValue(flagKey).intValue();
+    }
+
+    /**
+     * Returns the value of a flag as a double, or 0 if the value is not a number.
+     *
+     * @param flagKey the key of the flag
+     * @return the value of the flag
+     */
+    public double getDouble(String flagKey) {
+        return getValue(flagKey).doubleValue();
+    }
+
+    /**
+     * Returns the value of a flag as a string, or null if the value is not a string.
+     *
+     * @param flagKey the key of the flag
+     * @return the value of the flag
+     */
+    public String getString(String flagKey) {
+        return getValue(flagKey).stringValue();
+    }
+
+    /**
+     * Returns the number of flags in the result.
+     *
+     * @return the number of flags
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Returns the values of all flags in the result.
+     *
+     * @return an unmodifiable map from flag key to value
+     */
+    @NonNull
+    public Map<String, LDValue> asMap() {
+        return Collections.unmodifiableMap(values);
+    }
+}
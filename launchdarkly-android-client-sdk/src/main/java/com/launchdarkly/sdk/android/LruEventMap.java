@@ -0,0 +1,91 @@
+package com.launchdarkly.sdk.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * A least-recently-used map of bounded size, holding the events recorded within a flush window
+ * that are collapsed together, keyed by the fields that they must share. Used by
+ * {@link FeatureEventDeduplicator} and {@link MetricEventAggregator}, which synchronize access.
+ *
+ * @param <V> the value held for each distinct key
+ */
+final class LruEventMap<V> {
+
+    private final LinkedHashMap<Key, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final int capacity;
+
+    LruEventMap(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Nullable
+    V get(@NonNull Key key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Adds a value for a key that is not in the map.
+     *
+     * @return the least recently used value, if it was evicted to stay within capacity, or null
+     */
+    @Nullable
+    V put(@NonNull Key key, @NonNull V value) {
+        entries.put(key, value);
+        if (entries.size() > capacity) {
+            Iterator<V> eldest = entries.values().iterator();
+            V evicted = eldest.next();
+            eldest.remove();
+            return evicted;
+        }
+        return null;
+    }
+
+    /**
+     * Removes and returns the values, in order from least to most recently used.
+     */
+    @NonNull
+    List<V> drain() {
+        List<V> drained = new ArrayList<>(entries.values());
+        entries.clear();
+        return drained;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * The fields that events must share to be collapsed together, any of which may be null. The
+     * hash code is computed once, as each key is looked up at least once and usually compared.
+     */
+    static final class Key {
+        private final Object[] fields;
+        private final int hashCode;
+
+        Key(Object... fields) {
+            this.fields = fields;
+            this.hashCode = Arrays.hashCode(fields);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key o = (Key) other;
+            return hashCode == o.hashCode && Arrays.equals(fields, o.fields);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.launchdarkly.sdk.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aggregates metric events, which are custom events with a metric value, recorded within a flush
+ * window. Events for the same key, user and data are collapsed into a single event that carries
+ * the count, sum, minimum and maximum of their values, with the mean as its metric value.
+ * <p>
+ * Aggregates are held in a least-recently-used map of bounded size until they are drained at the
+ * next flush. When the map is full, the least recently updated aggregate is evicted so that it can
+ * be queued for delivery.
+ */
+final class MetricEventAggregator {
+
+    private final LruEventMap<Aggregate> aggregates;
+
+    MetricEventAggregator(int capacity) {
+        this.aggregates = new LruEventMap<>(capacity);
+    }
+
+    /**
+     * Records a metric event.
+     *
+     * @return an event that no longer fits in the map and should be queued, or null
+     */
+    @Nullable
+    synchronized CustomEvent add(@NonNull CustomEvent event) {
+        LruEventMap.Key key = new LruEventMap.Key(event.key,
+                event.user != null ? event.user.getKey() : event.userKey, event.contextKind, event.data);
+        Aggregate existing = aggregates.get(key);
+        if (existing != null) {
+            existing.add(event.metricValue);
+            return null;
+        }
+        Aggregate evicted = aggregates.put(key, new Aggregate(event));
+        return evicted != null ? evicted.toEvent() : null;
+    }
+
+    /**
+     * Removes and returns the aggregated events recorded since the last drain, starting a new
+     * flush window.
+     */
+    @NonNull
+    synchronized List<CustomEvent> drain() {
+        List<Aggregate> drained = aggregates.drain();
+        List<CustomEvent> events = new ArrayList<>(drained.size());
+        for (Aggregate aggregate : drained) {
+            events.add(aggregate.toEvent());
+        }
+        return events;
+    }
+
+    synchronized int size() {
+        return aggregates.size();
+    }
+
+    private static final class Aggregate {
+        // The first event, which stands for the others once they are collapsed into it
+        private final CustomEvent event;
+        private int count = 1;
+        private double sum;
+        private double min;
+        private double max;
+
+        Aggregate(CustomEvent event) {
+            this.event = event;
+            this.sum = event.metricValue;
+            this.min = event.metricValue;
+            this.max = event.metricValue;
+        }
+
+        void add(double value) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        CustomEvent toEvent() {
+            if (count > 1) {
+                event.count = count;
+                event.metricSum = sum;
+                event.metricMin = min;
+                event.metricMax = max;
+                event.metricValue = sum / count;
+            }
+            return event;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.launchdarkly.sdk.android;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static com.launchdarkly.sdk.android.FlagDatabase.COLUMN_ENVIRONMENT;
+import static com.launchdarkly.sdk.android.FlagDatabase.COLUMN_FLAG_JSON;
+import static com.launchdarkly.sdk.android.FlagDatabase.COLUMN_FLAG_KEY;
+import static com.launchdarkly.sdk.android.FlagDatabase.COLUMN_USER_HASH;
+import static com.launchdarkly.sdk.android.FlagDatabase.TABLE_FLAGS;
+
+/**
+ * A {@link FlagStore} backed by rows of the shared {@link FlagDatabase}. Loading the store is a
+ * single indexed range query for the user's rows, and each write only touches the rows of flags
+ * that changed, within one transaction. Before a user's store is first loaded, flags are migrated
+ * from the SharedPreferences store used by earlier SDK versions, and the migration is recorded so
+ * that it is not attempted again.
+ */
+class SQLiteFlagStore extends CachedFlagStore {
+
+    private static final String USER_SELECTION = COLUMN_ENVIRONMENT + " = ? AND " + COLUMN_USER_HASH + " = ?";
+    private static final String MIGRATION_KEY_PREFIX = "sqlite-";
+
+    private final Application application;
+    private final FlagDatabase database;
+    private final String environment;
+    private final String userHash;
+    private final String identifier;
+    private final Object migrationLock = new Object();
+
+    SQLiteFlagStore(@NonNull Application application, @NonNull String environment, @NonNull String userHash) {
+        // No snapshot is kept, as each write only touches the rows that changed; lookups made before
+        // the store is loaded wait for all of the user's rows to be read
+        super(null);
+        this.application = application;
+        this.database = FlagDatabase.getInstance(application);
+        this.environment = environment;
+        this.userHash = userHash;
+        this.identifier = environment + userHash;
+    }
+
+    @NonNull
+    @Override
+    Map<String, Flag> loadFlags() {
+        Map<String, Flag> flags = new HashMap<>();
+        try (Cursor cursor = database.getReadableDatabase().query(TABLE_FLAGS,
+                new String[]{COLUMN_FLAG_KEY, COLUMN_FLAG_JSON}, USER_SELECTION,
+                new String[]{environment, userHash}, null, null, null)) {
+            while (cursor.moveToNext()) {
+                String flagKey = cursor.getString(0);
+                try {
+                    flags.put(flagKey, Flag.fromJson(cursor.getString(1), flagKey));
+                } catch (IOException e) {
+                    LDConfig.LOG.w(e, "Ignoring malformed stored flag %s", flagKey);
+                }
+            }
+        } catch (SQLiteException e) {
+            LDConfig.LOG.e(e, "Unable to read flags from database");
+        }
+        return flags;
+    }
+
+    @Override
+    void beforeLoad() {
+        synchronized (migrationLock) {
+            if (migrations(application).contains(migrationKey(identifier))) {
+                return;
+            }
+            try {
+                if (DatabaseUtils.queryNumEntries(database.getReadableDatabase(), TABLE_FLAGS,
+                        USER_SELECTION, new String[]{environment, userHash}) > 0) {
+                    // Written by this SDK version, so there is nothing to migrate
+                    markMigrated();
+                    return;
+                }
+            } catch (SQLiteException e) {
+                // Attempted again the next time the store is loaded
+                LDConfig.LOG.e(e, "Unable to read flags from database");
+                return;
+            }
+            migrateFromSharedPrefs();
+        }
+    }
+
+    @Override
+    void persistFlags(@NonNull Map<String, Flag> allFlags,
+                      @NonNull Map<String, Flag> updatedFlags,
+                      @NonNull Set<String> deletedKeys,
+                      boolean replaceAll) {
+        try {
+            writeFlags(updatedFlags, deletedKeys, replaceAll);
+        } catch (SQLiteException e) {
+            LDConfig.LOG.e(e, "Unable to write flags to database");
+        }
+    }
+
+    private void writeFlags(@NonNull Map<String, Flag> updatedFlags,
+                            @NonNull Set<String> deletedKeys,
+                            boolean replaceAll) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            if (replaceAll) {
+                db.delete(TABLE_FLAGS, USER_SELECTION, new String[]{environment, userHash});
+            } else if (!deletedKeys.isEmpty()) {
+                try (SQLiteStatement delete = db.compileStatement("DELETE FROM " + TABLE_FLAGS + " WHERE "
+                        + USER_SELECTION + " AND " + COLUMN_FLAG_KEY + " = ?")) {
+                    for (String deletedKey : deletedKeys) {
+                        delete.bindString(1, environment);
+                        delete.bindString(2, userHash);
+                        delete.bindString(3, deletedKey);
+                        delete.executeUpdateDelete();
+                    }
+                }
+            }
+            if (!updatedFlags.isEmpty()) {
+                try (SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_FLAGS + " ("
+                        + COLUMN_ENVIRONMENT + ", " + COLUMN_USER_HASH + ", " + COLUMN_FLAG_KEY + ", "
+                        + COLUMN_FLAG_JSON + ") VALUES (?, ?, ?, ?)")) {
+                    for (Map.Entry<String, Flag> entry : updatedFlags.entrySet()) {
+                        insert.bindString(1, environment);
+                        insert.bindString(2, userHash);
+                        insert.bindString(3, entry.getKey());
+                        insert.bindString(4, entry.getValue().toJson());
+                        insert.executeInsert();
+                    }
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    void deleteBackingStore() {
+        try {
+            database.getWritableDatabase().delete(TABLE_FLAGS, USER_SELECTION, new String[]{environment, userHash});
+        } catch (SQLiteException e) {
+            LDConfig.LOG.e(e, "Unable to delete flags from database");
+        }
+        // Also remove any SharedPreferences data that was never migrated
+        //noinspection ResultOfMethodCallIgnored
+        SharedPrefsFlagStore.prefsFileForIdentifier(application, identifier).delete();
+        forgetMigration(application, identifier);
+    }
+
+    /**
+     * Removes the record that a user's flags were migrated, once the user's store is deleted.
+     */
+    static void forgetMigration(@NonNull Application application, @NonNull String identifier) {
+        migrations(application).edit().remove(migrationKey(identifier)).apply();
+    }
+
+    private static SharedPreferences migrations(Application application) {
+        return application.getSharedPreferences(LDConfig.SHARED_PREFS_BASE_KEY + "migrations", Context.MODE_PRIVATE);
+    }
+
+    private static String migrationKey(String identifier) {
+        return MIGRATION_KEY_PREFIX + identifier;
+    }
+
+    private void markMigrated() {
+        migrations(application).edit().putBoolean(migrationKey(identifier), true).apply();
+    }
+
+    private void migrateFromSharedPrefs() {
+        SharedPrefsFlagStore legacyStore = new SharedPrefsFlagStore(application, identifier);
+        Map<String, Flag> flags = new HashMap<>();
+        for (Flag flag : legacyStore.getAllFlags()) {
+            flags.put(flag.getKey(), flag);
+        }
+        if (!flags.isEmpty()) {
+            try {
+                writeFlags(flags, Collections.<String>emptySet(), true);
+            } catch (SQLiteException e) {
+                // Attempted again the next time the store is loaded
+                LDConfig.LOG.e(e, "Unable to migrate flags to database");
+                return;
+            }
+            LDConfig.LOG.i("Migrated %d flags from SharedPreferences for %s", flags.size(), identifier);
+            legacyStore.delete();
+        }
+        markMigrated();
+    }
+}
@@ -0,0 +1,62 @@
+package com.launchdarkly.sdk.android;
+
+import android.app.Application;
+import android.database.sqlite.SQLiteException;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Creates {@link SQLiteFlagStore}s for a single environment. Store identifiers are the mobile key
+ * followed by the user hash, and are split back into those columns of the {@link FlagDatabase}.
+ */
+class SQLiteFlagStoreFactory implements FlagStoreFactory {
+
+    private final Application application;
+    private final String mobileKey;
+
+    SQLiteFlagStoreFactory(@NonNull Application application, @NonNull String mobileKey) {
+        this.application = application;
+        this.mobileKey = mobileKey;
+    }
+
+    @Override
+    public FlagStore createFlagStore(@NonNull String identifier) {
+        return new SQLiteFlagStore(application, mobileKey, userHashForIdentifier(identifier));
+    }
+
+    @Override
+    public void deleteFlagStores(@NonNull Collection<String> identifiers) {
+        if (identifiers.isEmpty()) {
+            return;
+        }
+        // Make sure no pending changes are written back after the rows are deleted
+        FlagStorePersister.getInstance().flushAll();
+
+        List<String> args = new ArrayList<>();
+        args.add(mobileKey);
+        StringBuilder placeholders = new StringBuilder();
+        for (String identifier : identifiers) {
+            placeholders.append(placeholders.length() == 0 ? "?" : ", ?");
+            args.add(userHashForIdentifier(identifier));
+            // Also remove any SharedPreferences data that was never migrated
+            //noinspection ResultOfMethodCallIgnored
+            SharedPrefsFlagStore.prefsFileForIdentifier(application, identifier).delete();
+            SQLiteFlagStore.forgetMigration(application, mobileKey + userHashForIdentifier(identifier));
+        }
+        try {
+            FlagDatabase.getInstance(application).getWritableDatabase().delete(FlagDatabase.TABLE_FLAGS,
+                    FlagDatabase.COLUMN_ENVIRONMENT + " = ? AND " + FlagDatabase.COLUMN_USER_HASH + " IN (" + placeholders + ")",
+                    args.toArray(new String[0]));
+        } catch (SQLiteException e) {
+            LDConfig.LOG.e(e, "Unable to delete cached users from database");
+        }
+    }
+
+    private String userHashForIdentifier(@NonNull String identifier) {
+        return identifier.startsWith(mobileKey) ? identifier.substring(mobileKey.length()) : identifier;
+    }
+}
@@ -4,182 +4,90 @@ import android.annotation.SuppressLint;
 import android.app.Application;
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.util.Pair;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
-
-import com.google.gson.Gson;
 
 import java.io.File;
-import java.lang.ref.WeakReference;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.List;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 
-class SharedPrefsFlagStore implements FlagStore {
+/**
+ * A {@link FlagStore} that persists flags as JSON strings in SharedPreferences. The decoded flags
+ * are also held in memory, so evaluations are served by a map lookup and only updates go through
+ * SharedPreferences and Gson.
+ */
+class SharedPrefsFlagStore extends CachedFlagStore {
 
     private static final String SHARED_PREFS_BASE_KEY = "LaunchDarkly-";
     private final String prefsKey;
     private final Application application;
     private SharedPreferences sharedPreferences;
-    private WeakReference<StoreUpdatedListener> listenerWeakReference;
 
     SharedPrefsFlagStore(@NonNull Application application, @NonNull String identifier) {
+        super(new File(application.getFilesDir(), prefsKeyForIdentifier(identifier) + ".snapshot"));
         this.application = application;
-        this.prefsKey = SHARED_PREFS_BASE_KEY + identifier + "-flags";
+        this.prefsKey = prefsKeyForIdentifier(identifier);
         this.sharedPreferences = application.getSharedPreferences(prefsKey, Context.MODE_PRIVATE);
-        this.listenerWeakReference = new WeakReference<>(null);
     }
 
-    @SuppressLint("ApplySharedPref")
-    @Override
-    public void delete() {
-        sharedPreferences.edit().clear().commit();
-        sharedPreferences = null;
-
-        File file = new File(application.getFilesDir().getParent() + "/shared_prefs/" + prefsKey + ".xml");
-        LDConfig.LOG.i("Deleting SharedPrefs file:%s", file.getAbsolutePath());
-
-        //noinspection ResultOfMethodCallIgnored
-        file.delete();
+    static String prefsKeyForIdentifier(@NonNull String identifier) {
+        return SHARED_PREFS_BASE_KEY + identifier + "-flags";
     }
 
-    @Override
-    public void clear() {
-        sharedPreferences.edit().clear().apply();
+    static File prefsFileForIdentifier(@NonNull Application application, @NonNull String identifier) {
+        return new File(application.getFilesDir().getParent() + "/shared_prefs/" + prefsKeyForIdentifier(identifier) + ".xml");
     }
 
+    @NonNull
     @Override
-    public boolean containsKey(String key) {
-        return sharedPreferences.contains(key);
-    }
-
-    @Nullable
-    @Override
-    public Flag getFlag(String flagKey) {
-        return LDUtil.sharedPrefsGetGson(sharedPreferences, Flag.class, flagKey);
-    }
-
-    private Pair<String, FlagStoreUpdateType> applyFlagUpdateNoCommit(@NonNull SharedPreferences.Editor editor, @NonNull FlagUpdate flagUpdate) {
-        String flagKey = flagUpdate.flagToUpdate();
-        if (flagKey == null) {
-            return null;
-        }
-        Flag flag = getFlag(flagKey);
-        Flag newFlag = flagUpdate.updateFlag(flag);
-        if (flag != null && newFlag == null) {
-            editor.remove(flagKey);
-            return new Pair<>(flagKey, FlagStoreUpdateType.FLAG_DELETED);
-        } else if (flag == null && newFlag != null) {
-            String flagData = GsonCache.getGson().toJson(newFlag);
-            editor.putString(flagKey, flagData);
-            return new Pair<>(flagKey, FlagStoreUpdateType.FLAG_CREATED);
-        } else if (flag != newFlag) {
-            String flagData = GsonCache.getGson().toJson(newFlag);
-            editor.putString(flagKey, flagData);
-            return new Pair<>(flagKey, FlagStoreUpdateType.FLAG_UPDATED);
+    Map<String, Flag> loadFlags() {
+        // Only the scalar fields are parsed here; each flag's value and reason are decoded from
+        // the retained JSON when the flag is first evaluated.
+        Map<String, ?> entries = sharedPreferences.getAll();
+        Map<String, Flag> flags = new HashMap<>();
+        for (Map.Entry<String, ?> entry : entries.entrySet()) {
+            if (entry.getValue() instanceof String) {
+                try {
+                    Flag flag = Flag.fromJson((String) entry.getValue(), entry.getKey());
+                    flags.put(entry.getKey(), flag);
+                } catch (IOException e) {
+                    LDConfig.LOG.w(e, "Ignoring malformed stored flag %s", entry.getKey());
+                }
+            }
         }
-        return null;
+        return flags;
     }
 
     @Override
-    public void applyFlagUpdate(FlagUpdate flagUpdate) {
+    void persistFlags(@NonNull Map<String, Flag> allFlags,
+                      @NonNull Map<String, Flag> updatedFlags,
+                      @NonNull Set<String> deletedKeys,
+                      boolean replaceAll) {
         SharedPreferences.Editor editor = sharedPreferences.edit();
-        Pair<String, FlagStoreUpdateType> update = applyFlagUpdateNoCommit(editor, flagUpdate);
-        editor.apply();
-        StoreUpdatedListener storeUpdatedListener = listenerWeakReference.get();
-        if (update != null && storeUpdatedListener != null) {
-            storeUpdatedListener.onStoreUpdate(Collections.singletonList(new Pair<>(update.first, update.second)));
+        if (replaceAll) {
+            editor.clear();
         }
-    }
-
-    private void informListenerOfUpdateList(List<Pair<String, FlagStoreUpdateType>> updates) {
-        StoreUpdatedListener storeUpdatedListener = listenerWeakReference.get();
-        if (storeUpdatedListener != null) {
-            storeUpdatedListener.onStoreUpdate(updates);
-        }
-    }
-
-    @Override
-    public void applyFlagUpdates(List<? extends FlagUpdate> flagUpdates) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        ArrayList<Pair<String, FlagStoreUpdateType>> updates = new ArrayList<>();
-        for (FlagUpdate flagUpdate : flagUpdates) {
-            Pair<String, FlagStoreUpdateType> update = applyFlagUpdateNoCommit(editor, flagUpdate);
-            if (update != null) {
-                updates.add(update);
-            }
+        for (String deletedKey : deletedKeys) {
+            editor.remove(deletedKey);
         }
-        editor.apply();
-        informListenerOfUpdateList(updates);
-    }
-
-    @Override
-    public void clearAndApplyFlagUpdates(List<? extends FlagUpdate> newFlags) {
-        Gson gson = GsonCache.getGson();
-        Map<String, Flag> cachedFlags = LDUtil.sharedPrefsGetAllGson(sharedPreferences, Flag.class);
-        // here we explicitly copy the keySet()
-        // this is because modifying a keySet() also modifies the underlying map
-        // and we modify this further up to track changes
-        Set<String> clearedKeys = new HashSet<>(cachedFlags.keySet());
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.clear();
-        ArrayList<Pair<String, FlagStoreUpdateType>> updates = new ArrayList<>();
-        for (FlagUpdate flagUpdate : newFlags) {
-            String flagKey = flagUpdate.flagToUpdate();
-            if (flagKey == null) {
-                continue;
-            }
-            Flag newFlag = flagUpdate.updateFlag(null);
-            if (newFlag != null) {
-                String flagData = gson.toJson(newFlag);
-                editor.putString(flagKey, flagData);
-
-                // track that this key has not been deleted
-                clearedKeys.remove(flagKey);
-
-                Flag cachedFlag = cachedFlags.get(flagKey);
-
-                if (cachedFlag != null) {
-                    Integer cv = cachedFlag.getVersion();
-                    Integer nv = newFlag.getVersion();
-
-                    if (!Objects.equals(cv, nv)) {
-                        // only track updates if the versions of the flag has changed
-                        updates.add(new Pair<>(flagKey, FlagStoreUpdateType.FLAG_UPDATED));
-                    }
-                    continue;
-                }
-
-                // Flag not present in cached flags so mark it as newly created
-                updates.add(new Pair<>(flagKey, FlagStoreUpdateType.FLAG_CREATED));
-            }
+        for (Map.Entry<String, Flag> entry : updatedFlags.entrySet()) {
+            editor.putString(entry.getKey(), entry.getValue().toJson());
         }
         editor.apply();
-        for (String clearedKey : clearedKeys) {
-            updates.add(new Pair<>(clearedKey, FlagStoreUpdateType.FLAG_DELETED));
-        }
-        informListenerOfUpdateList(updates);
     }
 
+    @SuppressLint("ApplySharedPref")
     @Override
-    public Collection<Flag> getAllFlags() {
-        return LDUtil.sharedPrefsGetAllGson(sharedPreferences, Flag.class).values();
-    }
+    void deleteBackingStore() {
+        sharedPreferences.edit().clear().commit();
+        sharedPreferences = null;
 
-    @Override
-    public void registerOnStoreUpdatedListener(StoreUpdatedListener storeUpdatedListener) {
-        listenerWeakReference = new WeakReference<>(storeUpdatedListener);
-    }
+        File file = new File(application.getFilesDir().getParent() + "/shared_prefs/" + prefsKey + ".xml");
+        LDConfig.LOG.i("Deleting SharedPrefs file:%s", file.getAbsolutePath());
 
-    @Override
-    public void unregisterOnStoreUpdatedListener() {
-        listenerWeakReference.clear();
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
     }
 }
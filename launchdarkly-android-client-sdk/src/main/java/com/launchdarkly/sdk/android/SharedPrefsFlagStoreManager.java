@@ -56,6 +56,8 @@ class SharedPrefsFlagStoreManager implements FlagStoreManager, StoreUpdatedListe
             currentFlagStore.unregisterOnStoreUpdatedListener();
         }
         currentFlagStore = flagStoreFactory.createFlagStore(storeId);
+        // Serve the user's cached flags from the memory-mapped snapshot until the store is loaded
+        currentFlagStore.openSnapshot();
         currentFlagStore.registerOnStoreUpdatedListener(this);
 
         // Store the user's key and the current time in usersSharedPrefs so it can be removed when
@@ -70,15 +72,23 @@ class SharedPrefsFlagStoreManager implements FlagStoreManager, StoreUpdatedListe
         int usersToRemove = maxCachedUsers >= 0 ? usersStored - maxCachedUsers - 1 : 0;
         if (usersToRemove > 0) {
             Iterator<String> oldestFirstUsers = getCachedUsers(storeId).iterator();
+            List<String> removedUsers = new ArrayList<>();
+            List<String> removedStoreIds = new ArrayList<>();
             // Remove oldest users until we are at MAX_USERS.
             for (int i = 0; i < usersToRemove; i++) {
                 String removed = oldestFirstUsers.next();
                 LDConfig.LOG.d("Exceeded max # of users: [%s] Removing user: [%s]", maxCachedUsers, removed);
-                // Load FlagStore for oldest user and delete it.
-                flagStoreFactory.createFlagStore(storeIdentifierForUser(removed)).delete();
-                // Remove entry from usersSharedPrefs.
-                usersSharedPrefs.edit().remove(removed).apply();
+                removedUsers.add(removed);
+                removedStoreIds.add(storeIdentifierForUser(removed));
             }
+            // Delete the FlagStores for all removed users at once.
+            flagStoreFactory.deleteFlagStores(removedStoreIds);
+            // Remove entries from usersSharedPrefs.
+            SharedPreferences.Editor editor = usersSharedPrefs.edit();
+            for (String removed : removedUsers) {
+                editor.remove(removed);
+            }
+            editor.apply();
         }
     }
 
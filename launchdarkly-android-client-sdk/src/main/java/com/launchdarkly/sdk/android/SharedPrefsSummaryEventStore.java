@@ -4,95 +4,244 @@ import android.app.Application;
 import android.content.Context;
 import android.content.SharedPreferences;
 
+import androidx.annotation.NonNull;
+
 import com.launchdarkly.sdk.LDValue;
 
-import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Used internally by the SDK.
+ * <p>
+ * Summary counters are aggregated in memory in striped {@link SummaryCounterTable}s, so recording
+ * an evaluation does not touch the disk or allocate, and threads evaluating flags concurrently
+ * rarely contend. The counters are checkpointed to SharedPreferences at most
+ * {@link #CHECKPOINT_DELAY_MILLIS} after they change, and whenever {@link #checkpoint()} is
+ * called, so that counts survive the process being killed before they are sent.
  */
 class SharedPrefsSummaryEventStore implements SummaryEventStore {
 
+    static final long CHECKPOINT_DELAY_MILLIS = 30_000;
+
     private static final String START_DATE_KEY = "$startDate$";
+    private static final int MAX_STRIPES = 16;
+
+    private static final ScheduledExecutorService checkpointExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            Thread thread = Executors.defaultThreadFactory().newThread(r);
+            thread.setName("LaunchDarkly-SummaryEventCheckpoint");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
 
     private final SharedPreferences sharedPreferences;
 
+    // Evaluating threads count into the stripe selected by their thread id, each guarded by its
+    // own lock, so threads rarely contend. The stripes are merged when the summary is read.
+    private final SummaryCounterTable[] stripes;
+    private final int stripeMask;
+    private final AtomicLong startDate = new AtomicLong(-1);
+    private final AtomicBoolean checkpointScheduled = new AtomicBoolean(false);
+    private volatile boolean dirty;
+    private volatile boolean loaded;
+
     SharedPrefsSummaryEventStore(Application application, String name) {
+        this(application, name, defaultStripeCount());
+    }
+
+    SharedPrefsSummaryEventStore(Application application, String name, int stripeCount) {
         this.sharedPreferences = application.getSharedPreferences(name, Context.MODE_PRIVATE);
+        int count = Integer.highestOneBit(Math.max(1, stripeCount));
+        this.stripes = new SummaryCounterTable[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new SummaryCounterTable();
+        }
+        this.stripeMask = count - 1;
     }
 
-    @Override
-    public synchronized void addOrUpdateEvent(String flagResponseKey, LDValue value, LDValue defaultVal, Integer version, Integer variation) {
-        FlagCounters storedCounters = getFlagCounters(flagResponseKey);
+    private static int defaultStripeCount() {
+        // Round up to a power of two, with some headroom over the number of cores
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, cores) * 2 - 1) * 2);
+    }
 
-        if (storedCounters == null) {
-            storedCounters = new FlagCounters(defaultVal);
+    private SummaryCounterTable stripe() {
+        if (!loaded) {
+            load();
         }
+        return stripes[(int) Thread.currentThread().getId() & stripeMask];
+    }
 
-        boolean existingCounter = false;
-        for (FlagCounter counter: storedCounters.counters) {
-            if (counter.matches(version, variation)) {
-                counter.count++;
-                existingCounter = true;
-                break;
-            }
+    @Override
+    public void addOrUpdateEvent(String flagResponseKey, LDValue value, LDValue defaultVal, Integer version, Integer variation) {
+        SummaryCounterTable stripe = stripe();
+        synchronized (stripe) {
+            stripe.increment(flagResponseKey, value, defaultVal, version, variation);
         }
+        markDirty();
+    }
 
-        if (!existingCounter) {
-            storedCounters.counters.add(new FlagCounter(value, version, variation));
+    @Override
+    public boolean updateExistingEvent(String flagResponseKey, LDValue value, Integer version, Integer variation) {
+        SummaryCounterTable stripe = stripe();
+        synchronized (stripe) {
+            if (!stripe.incrementExisting(flagResponseKey, value, version, variation)) {
+                return false;
+            }
         }
+        markDirty();
+        return true;
+    }
 
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString(flagResponseKey, GsonCache.getGson().toJson(storedCounters));
-        if (!sharedPreferences.contains(START_DATE_KEY)) {
-            editor.putLong(START_DATE_KEY, System.currentTimeMillis()).apply();
+    @Override
+    public void addOrUpdateEvents(List<Evaluation> evaluations) {
+        if (evaluations.isEmpty()) {
+            return;
         }
-        editor.apply();
+        SummaryCounterTable stripe = stripe();
+        synchronized (stripe) {
+            for (Evaluation evaluation : evaluations) {
+                stripe.increment(evaluation.flagKey, evaluation.value, evaluation.defaultValue, evaluation.version, evaluation.variation);
+            }
+        }
+        markDirty();
+    }
 
-        LDConfig.LOG.d("Updated summary for flagKey %s to %s", flagResponseKey, GsonCache.getGson().toJson(storedCounters));
+    private void markDirty() {
+        // Only write to shared state when it changes, so that threads counting into different
+        // stripes do not contend on it
+        if (startDate.get() == -1) {
+            startDate.compareAndSet(-1, System.currentTimeMillis());
+        }
+        if (!dirty) {
+            dirty = true;
+        }
+        if (!checkpointScheduled.get() && checkpointScheduled.compareAndSet(false, true)) {
+            checkpointExecutor.schedule(this::checkpoint, CHECKPOINT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
     }
 
-    @Override
-    public synchronized SummaryEvent getSummaryEvent() {
-        long startDate = sharedPreferences.getLong(START_DATE_KEY, -1);
-        HashMap<String, FlagCounters> features = new HashMap<>();
+    /**
+     * Loads any checkpointed counters into the first stripe.
+     */
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        long storedStartDate = sharedPreferences.getLong(START_DATE_KEY, -1);
+        SummaryCounterTable stored = new SummaryCounterTable();
         for (String key: sharedPreferences.getAll().keySet()) {
             if (START_DATE_KEY.equals(key)) {
                 continue;
             }
-            features.put(key, getFlagCounters(key));
+            FlagCounters storedCounters = getStoredFlagCounters(key);
+            if (storedCounters == null) {
+                // An old version of shared preferences is stored, so discard it.
+                stored.clear();
+                storedStartDate = -1;
+                sharedPreferences.edit().clear().apply();
+                break;
+            }
+            stored.addCounters(key, storedCounters);
         }
-
-        if (startDate == -1 || features.size() == 0) {
-            return null;
+        if (!stored.isEmpty()) {
+            synchronized (stripes[0]) {
+                stored.addTo(stripes[0]);
+            }
+            startDate.compareAndSet(-1, storedStartDate);
         }
-
-        return new SummaryEvent(startDate, System.currentTimeMillis(), features);
+        loaded = true;
     }
 
-    synchronized FlagCounters getFlagCounters(String flagKey) {
+    private FlagCounters getStoredFlagCounters(String flagKey) {
         try {
             String storedJson = sharedPreferences.getString(flagKey, null);
-            if (storedJson == null) {
-                return null;
+            if (storedJson != null) {
+                return GsonCache.getGson().fromJson(storedJson, FlagCounters.class);
             }
-            return GsonCache.getGson().fromJson(storedJson, FlagCounters.class);
         } catch (Exception ignored) {
-            // Fallthrough to clear
+            // Fallthrough to return null
         }
-        // An old version of shared preferences is stored, so clear it.
-        clear();
         return null;
     }
 
+    /**
+     * Merges the counters of all stripes, optionally clearing them. Each stripe is drained under
+     * its own lock, so every evaluation is counted in exactly one merge that clears.
+     */
+    private SummaryCounterTable merge(boolean clear) {
+        SummaryCounterTable merged = new SummaryCounterTable();
+        for (SummaryCounterTable stripe : stripes) {
+            synchronized (stripe) {
+                stripe.addTo(merged);
+                if (clear) {
+                    stripe.clear();
+                }
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public synchronized void checkpoint() {
+        checkpointScheduled.set(false);
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        load();
+        SharedPreferences.Editor editor = sharedPreferences.edit().clear();
+        long currentStartDate = startDate.get();
+        if (currentStartDate != -1) {
+            editor.putLong(START_DATE_KEY, currentStartDate);
+        }
+        Map<String, FlagCounters> features = merge(false).toFeatures();
+        for (Map.Entry<String, FlagCounters> entry : features.entrySet()) {
+            editor.putString(entry.getKey(), GsonCache.getGson().toJson(entry.getValue()));
+        }
+        editor.apply();
+        LDConfig.LOG.d("Checkpointed summary counters for %d flags", features.size());
+    }
+
+    @Override
+    public synchronized SummaryEvent getSummaryEvent() {
+        load();
+        long currentStartDate = startDate.get();
+        SummaryCounterTable merged = merge(false);
+        if (currentStartDate == -1 || merged.isEmpty()) {
+            return null;
+        }
+        return new SummaryEvent(currentStartDate, System.currentTimeMillis(), merged.toFeatures());
+    }
+
     @Override
     public synchronized SummaryEvent getSummaryEventAndClear() {
-        SummaryEvent summaryEvent = getSummaryEvent();
-        clear();
-        return summaryEvent;
+        load();
+        // Evaluations racing with this call set a new start date for the next summary
+        long currentStartDate = startDate.getAndSet(-1);
+        dirty = false;
+        SummaryCounterTable merged = merge(true);
+        sharedPreferences.edit().clear().apply();
+        if (currentStartDate == -1 || merged.isEmpty()) {
+            return null;
+        }
+        return new SummaryEvent(currentStartDate, System.currentTimeMillis(), merged.toFeatures());
     }
 
     public synchronized void clear() {
+        load();
+        startDate.set(-1);
+        dirty = false;
+        merge(true);
         sharedPreferences.edit().clear().apply();
     }
 }
@@ -0,0 +1,239 @@
+package com.launchdarkly.sdk.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.launchdarkly.sdk.LDValue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Aggregates summary event counters keyed by (flag, version, variation) in an open-addressing
+ * table of primitive slots. Flag keys are mapped to small integer ids that are kept across
+ * {@link #clear()}, so once a flag and counter have been seen, counting another evaluation is a
+ * hash probe and an increment that does not allocate. The counters are only converted to the
+ * {@link SummaryEventStore.FlagCounters} representation used in summary events by
+ * {@link #toFeatures()}.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class SummaryCounterTable {
+
+    // Stands in for a null version or variation
+    private static final int NONE = Integer.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Flag key registry, indexed by key id
+    private final HashMap<String, Integer> keyIds = new HashMap<>();
+    private String[] keys = new String[16];
+    private LDValue[] defaultValues = new LDValue[16];
+    private boolean[] keyActive = new boolean[16];
+    private int activeKeyCount;
+
+    // Counter slots. A slot is empty when its key id is -1.
+    private int[] slotKeyIds;
+    private int[] slotVersions;
+    private int[] slotVariations;
+    private long[] slotCounts;
+    private LDValue[] slotValues;
+    private int size;
+    private int mask;
+
+    SummaryCounterTable() {
+        allocateSlots(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Counts an evaluation of a flag, registering the flag with its default value if it has not
+     * been counted since the last {@link #clear()}.
+     */
+    void increment(@NonNull String flagKey, LDValue value, LDValue defaultValue,
+                   @Nullable Integer version, @Nullable Integer variation) {
+        add(activate(flagKey, defaultValue), value, version, variation, 1);
+    }
+
+    /**
+     * Counts an evaluation of a flag only if the flag has already been counted since the last
+     * {@link #clear()}.
+     *
+     * @return false if the flag has not been counted, in which case nothing was recorded
+     */
+    boolean incrementExisting(@NonNull String flagKey, LDValue value,
+                              @Nullable Integer version, @Nullable Integer variation) {
+        Integer keyId = keyIds.get(flagKey);
+        if (keyId == null || !keyActive[keyId]) {
+            return false;
+        }
+        add(keyId, value, version, variation, 1);
+        return true;
+    }
+
+    /**
+     * Adds previously aggregated counters for a flag, such as ones loaded from a checkpoint.
+     */
+    void addCounters(@NonNull String flagKey, @NonNull SummaryEventStore.FlagCounters flagCounters) {
+        int keyId = activate(flagKey, flagCounters.defaultValue);
+        for (SummaryEventStore.FlagCounter counter : flagCounters.counters) {
+            add(keyId, counter.value, counter.isUnknown() ? null : counter.version, counter.variation, counter.count);
+        }
+    }
+
+    /**
+     * Adds all counters of this table to another table.
+     */
+    void addTo(@NonNull SummaryCounterTable target) {
+        for (int slot = 0; slot < slotKeyIds.length; slot++) {
+            int keyId = slotKeyIds[slot];
+            if (keyId != -1) {
+                int targetKeyId = target.activate(keys[keyId], defaultValues[keyId]);
+                target.addSlot(targetKeyId, slotVersions[slot], slotVariations[slot], slotValues[slot], slotCounts[slot]);
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return activeKeyCount == 0;
+    }
+
+    int flagCount() {
+        return activeKeyCount;
+    }
+
+    /**
+     * Converts the counters to the representation used in summary events.
+     */
+    @NonNull
+    Map<String, SummaryEventStore.FlagCounters> toFeatures() {
+        HashMap<String, SummaryEventStore.FlagCounters> features = new HashMap<>();
+        for (int keyId = 0; keyId < keyIds.size(); keyId++) {
+            if (keyActive[keyId]) {
+                features.put(keys[keyId], new SummaryEventStore.FlagCounters(defaultValues[keyId]));
+            }
+        }
+        for (int slot = 0; slot < slotKeyIds.length; slot++) {
+            int keyId = slotKeyIds[slot];
+            if (keyId == -1) {
+                continue;
+            }
+            Integer version = slotVersions[slot] == NONE ? null : slotVersions[slot];
+            Integer variation = slotVariations[slot] == NONE ? null : slotVariations[slot];
+            SummaryEventStore.FlagCounter counter = new SummaryEventStore.FlagCounter(slotValues[slot], version, variation);
+            counter.count = (int) slotCounts[slot];
+            features.get(keys[keyId]).counters.add(counter);
+        }
+        return features;
+    }
+
+    /**
+     * Removes all counters. Flag key ids are retained so that flags counted again do not need to
+     * be registered again.
+     */
+    void clear() {
+        Arrays.fill(keyActive, false);
+        Arrays.fill(defaultValues, null);
+        activeKeyCount = 0;
+        Arrays.fill(slotKeyIds, -1);
+        Arrays.fill(slotValues, null);
+        size = 0;
+    }
+
+    private int activate(@NonNull String flagKey, LDValue defaultValue) {
+        int keyId = keyId(flagKey);
+        if (!keyActive[keyId]) {
+            keyActive[keyId] = true;
+            defaultValues[keyId] = defaultValue;
+            activeKeyCount++;
+        }
+        return keyId;
+    }
+
+    private int keyId(@NonNull String flagKey) {
+        Integer keyId = keyIds.get(flagKey);
+        if (keyId != null) {
+            return keyId;
+        }
+        int newId = keyIds.size();
+        if (newId == keys.length) {
+            int newLength = keys.length * 2;
+            keys = Arrays.copyOf(keys, newLength);
+            defaultValues = Arrays.copyOf(defaultValues, newLength);
+            keyActive = Arrays.copyOf(keyActive, newLength);
+        }
+        keys[newId] = flagKey;
+        keyIds.put(flagKey, newId);
+        return newId;
+    }
+
+    private void add(int keyId, LDValue value, @Nullable Integer version, @Nullable Integer variation, long count) {
+        // As in FlagCounter, evaluations of an unknown version are counted together
+        int versionValue = version == null ? NONE : version;
+        int variationValue = version == null || variation == null ? NONE : variation;
+        addSlot(keyId, versionValue, variationValue, value, count);
+    }
+
+    private void addSlot(int keyId, int versionValue, int variationValue, LDValue value, long count) {
+        int slot = hash(keyId, versionValue, variationValue) & mask;
+        while (slotKeyIds[slot] != -1) {
+            if (slotKeyIds[slot] == keyId && slotVersions[slot] == versionValue && slotVariations[slot] == variationValue) {
+                slotCounts[slot] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slotKeyIds[slot] = keyId;
+        slotVersions[slot] = versionValue;
+        slotVariations[slot] = variationValue;
+        slotCounts[slot] = count;
+        slotValues[slot] = value;
+        size++;
+        // Keep the load factor at or below one half
+        if (size * 2 > slotKeyIds.length) {
+            resize();
+        }
+    }
+
+    private static int hash(int keyId, int version, int variation) {
+        int h = keyId * 0x9E3779B9;
+        h = (h ^ version) * 0x85EBCA6B;
+        h = (h ^ variation) * 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    private void allocateSlots(int capacity) {
+        slotKeyIds = new int[capacity];
+        Arrays.fill(slotKeyIds, -1);
+        slotVersions = new int[capacity];
+        slotVariations = new int[capacity];
+        slotCounts = new long[capacity];
+        slotValues = new LDValue[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private void resize() {
+        int[] oldKeyIds = slotKeyIds;
+        int[] oldVersions = slotVersions;
+        int[] oldVariations = slotVariations;
+        long[] oldCounts = slotCounts;
+        LDValue[] oldValues = slotValues;
+        allocateSlots(oldKeyIds.length * 2);
+        for (int slot = 0; slot < oldKeyIds.length; slot++) {
+            int keyId = oldKeyIds[slot];
+            if (keyId == -1) {
+                continue;
+            }
+            int newSlot = hash(keyId, oldVersions[slot], oldVariations[slot]) & mask;
+            while (slotKeyIds[newSlot] != -1) {
+                newSlot = (newSlot + 1) & mask;
+            }
+            slotKeyIds[newSlot] = keyId;
+            slotVersions[newSlot] = oldVersions[slot];
+            slotVariations[newSlot] = oldVariations[slot];
+            slotCounts[newSlot] = oldCounts[slot];
+            slotValues[newSlot] = oldValues[slot];
+            size++;
+        }
+    }
+}
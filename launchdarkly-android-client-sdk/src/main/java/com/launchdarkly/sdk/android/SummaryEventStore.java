@@ -13,7 +13,27 @@ import java.util.Objects;
 interface SummaryEventStore {
     void clear();
     void addOrUpdateEvent(String flagResponseKey, LDValue value, LDValue defaultVal, @Nullable Integer version, @Nullable Integer variation);
+
+    /**
+     * Records an evaluation like {@link #addOrUpdateEvent}, but only if the flag has already been
+     * summarized, so that the caller does not have to provide the default value.
+     *
+     * @return false if the flag has no summary yet, in which case nothing was recorded
+     */
+    boolean updateExistingEvent(String flagResponseKey, LDValue value, @Nullable Integer version, @Nullable Integer variation);
+
+    /**
+     * Records several evaluations like {@link #addOrUpdateEvent}, persisting them in one write.
+     *
+     * @param evaluations the evaluations to record
+     */
+    void addOrUpdateEvents(List<Evaluation> evaluations);
     SummaryEvent getSummaryEvent();
+
+    /**
+     * Writes any counters that are only held in memory to persistent storage.
+     */
+    void checkpoint();
     SummaryEvent getSummaryEventAndClear();
 
     class FlagCounter {
@@ -47,6 +67,22 @@ interface SummaryEventStore {
         }
     }
 
+    class Evaluation {
+        final String flagKey;
+        final LDValue value;
+        final LDValue defaultValue;
+        @Nullable final Integer version;
+        @Nullable final Integer variation;
+
+        Evaluation(String flagKey, LDValue value, LDValue defaultValue, @Nullable Integer version, @Nullable Integer variation) {
+            this.flagKey = flagKey;
+            this.value = value;
+            this.defaultValue = defaultValue;
+            this.version = version;
+            this.variation = variation;
+        }
+    }
+
     class FlagCounters {
         @Expose @SerializedName("default") LDValue defaultValue;
         @Expose List<FlagCounter> counters = new ArrayList<>();
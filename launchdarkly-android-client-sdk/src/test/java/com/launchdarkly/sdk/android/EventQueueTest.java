@@ -0,0 +1,109 @@
+package com.launchdarkly.sdk.android;
+
+import com.google.gson.Gson;
+import com.launchdarkly.sdk.LDUser;
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventQueueTest {
+
+    private final Gson gson = new Gson();
+    private final LDUser user = new LDUser.Builder("userKey").build();
+
+    @Test
+    public void dropNewestRejectsEventWhenFull() {
+        EventQueue queue = new EventQueue(gson, 2, 0, EventOverflowPolicy.DROP_NEWEST);
+        assertTrue(queue.offer(custom("first")));
+        assertTrue(queue.offer(custom("second")));
+        assertFalse(queue.offer(custom("third")));
+
+        assertEquals(Arrays.asList("first", "second"), drainKeys(queue));
+        assertEquals(0, queue.takeEvictedCount());
+    }
+
+    @Test
+    public void dropOldestMakesRoomForEvent() {
+        EventQueue queue = new EventQueue(gson, 2, 0, EventOverflowPolicy.DROP_OLDEST);
+        assertTrue(queue.offer(custom("first")));
+        assertTrue(queue.offer(custom("second")));
+        assertTrue(queue.offer(custom("third")));
+
+        assertEquals(Arrays.asList("second", "third"), drainKeys(queue));
+        assertEquals(1, queue.takeEvictedCount());
+        assertEquals(0, queue.takeEvictedCount());
+    }
+
+    @Test
+    public void preferredPolicyDiscardsFeatureEventsFirst() {
+        EventQueue queue = new EventQueue(gson, 3, 0, EventOverflowPolicy.PREFER_IDENTIFY_AND_CUSTOM);
+        assertTrue(queue.offer(new IdentifyEvent(user)));
+        assertTrue(queue.offer(feature("flag")));
+        assertTrue(queue.offer(custom("first")));
+
+        // Replaces the feature event
+        assertTrue(queue.offer(custom("second")));
+        // No room, and no feature event to replace
+        assertFalse(queue.offer(feature("other-flag")));
+        assertFalse(queue.offer(custom("third")));
+
+        assertEquals(Arrays.asList(user.getKey(), "first", "second"), drainKeys(queue));
+        assertEquals(1, queue.takeEvictedCount());
+    }
+
+    @Test
+    public void byteCapacityIsMeasuredBySize() {
+        LDValue data = LDValue.of(repeat('x', 1000));
+        int capacityBytes = 3 * (EventQueue.BASE_EVENT_BYTES + 1002);
+        EventQueue queue = new EventQueue(gson, 1, capacityBytes, EventOverflowPolicy.DROP_NEWEST);
+        // Small events fit beyond the count capacity
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.offer(custom("small")));
+        }
+        assertTrue(queue.offer(new CustomEvent("large", user, data, null, false)));
+        assertFalse(queue.offer(new CustomEvent("large", user, data, null, false)));
+        assertEquals(11, queue.size());
+    }
+
+    @Test
+    public void eventLargerThanByteCapacityIsRejected() {
+        EventQueue queue = new EventQueue(gson, 100, 500, EventOverflowPolicy.DROP_OLDEST);
+        assertTrue(queue.offer(custom("small")));
+        assertFalse(queue.offer(new CustomEvent("large", user, LDValue.of(repeat('x', 1000)), null, false)));
+        assertEquals(Arrays.asList("small"), drainKeys(queue));
+    }
+
+    private CustomEvent custom(String key) {
+        return new CustomEvent(key, user, null, null, false);
+    }
+
+    private FeatureRequestEvent feature(String key) {
+        return new FeatureRequestEvent(key, user, LDValue.of(true), LDValue.of(false), 1, 0, null, false, false);
+    }
+
+    private static List<String> drainKeys(EventQueue queue) {
+        List<Event> events = new ArrayList<>();
+        queue.drainTo(events);
+        List<String> keys = new ArrayList<>();
+        for (Event event : events) {
+            keys.add(((GenericEvent) event).key);
+        }
+        return keys;
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package com.launchdarkly.sdk.android;
+
+import com.launchdarkly.sdk.LDUser;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventRingBufferTest {
+
+    private final LDUser user = new LDUser.Builder("userKey").build();
+
+    @Test
+    public void rejectsNewestEventAtCapacity() {
+        // Not a power of two, so the capacity is smaller than the array
+        EventRingBuffer buffer = new EventRingBuffer(3);
+        assertTrue(buffer.offer(custom("0")));
+        assertTrue(buffer.offer(custom("1")));
+        assertTrue(buffer.offer(custom("2")));
+        assertFalse(buffer.offer(custom("3")));
+        assertEquals(3, buffer.size());
+
+        List<Event> events = new ArrayList<>();
+        assertEquals(3, buffer.drainTo(events));
+        assertEquals("0", ((CustomEvent) events.get(0)).key);
+        assertEquals("2", ((CustomEvent) events.get(2)).key);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void slotsAreReusedAfterDrain() {
+        EventRingBuffer buffer = new EventRingBuffer(4);
+        List<Event> events = new ArrayList<>();
+        for (int lap = 0; lap < 10; lap++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(buffer.offer(custom(lap + "-" + i)));
+            }
+            assertFalse(buffer.offer(custom("extra")));
+            events.clear();
+            assertEquals(4, buffer.drainTo(events));
+            assertEquals(lap + "-0", ((CustomEvent) events.get(0)).key);
+            assertEquals(lap + "-3", ((CustomEvent) events.get(3)).key);
+        }
+    }
+
+    @Test
+    public void concurrentProducersDeliverEachEventOnceInOrder() throws InterruptedException {
+        final int producers = 8;
+        final int eventsPerProducer = 20000;
+        final EventRingBuffer buffer = new EventRingBuffer(256);
+        final CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            final String prefix = p + ":";
+            new Thread(() -> {
+                for (int i = 0; i < eventsPerProducer; i++) {
+                    CustomEvent event = custom(prefix + i);
+                    while (!buffer.offer(event)) {
+                        Thread.yield();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+
+        int[] next = new int[producers];
+        List<Event> events = new ArrayList<>();
+        int received = 0;
+        while (received < producers * eventsPerProducer) {
+            events.clear();
+            received += buffer.drainTo(events);
+            for (Event event : events) {
+                String[] parts = ((CustomEvent) event).key.split(":");
+                int producer = Integer.parseInt(parts[0]);
+                assertEquals(next[producer]++, Integer.parseInt(parts[1]));
+            }
+        }
+        done.await();
+        for (int count : next) {
+            assertEquals(eventsPerProducer, count);
+        }
+        assertEquals(0, buffer.size());
+    }
+
+    private CustomEvent custom(String key) {
+        return new CustomEvent(key, user, null, null, false);
+    }
+}
@@ -0,0 +1,67 @@
+package com.launchdarkly.sdk.android;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.launchdarkly.sdk.LDUser;
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class EventsRequestBodyTest {
+
+    private final Gson gson = new Gson();
+    private final LDUser user = new LDUser.Builder("userKey").name("Name").build();
+
+    @Test
+    public void writesSameJsonAsSerializingTheList() throws IOException {
+        List<Event> events = Arrays.<Event>asList(
+                new IdentifyEvent(user),
+                new CustomEvent("custom", user, LDValue.of("data"), 2.5, true),
+                new FeatureRequestEvent("flag", user, LDValue.of(true), LDValue.of(false), 3, 1, null, false, false));
+        EventsRequestBody body = new EventsRequestBody(gson, Collections.<String>emptyList(), events);
+
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+
+        assertEquals(gson.toJson(events), buffer.readUtf8());
+        assertEquals(3, body.getEventCount());
+    }
+
+    @Test
+    public void writesSerializedEventsFirst() throws IOException {
+        String persisted = gson.toJson(new CustomEvent("persisted", user, null, null, false));
+        List<Event> events = Collections.<Event>singletonList(new CustomEvent("recent", user, null, null, false));
+        EventsRequestBody body = new EventsRequestBody(gson, Collections.singletonList(persisted), events);
+
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+
+        JsonArray array = JsonParser.parseString(buffer.readUtf8()).getAsJsonArray();
+        assertEquals(2, array.size());
+        assertEquals("persisted", array.get(0).getAsJsonObject().get("key").getAsString());
+        assertEquals("recent", array.get(1).getAsJsonObject().get("key").getAsString());
+    }
+
+    @Test
+    public void canBeWrittenAgainForRetry() throws IOException {
+        List<Event> events = Collections.<Event>singletonList(new CustomEvent("custom", user, null, 1.0, false));
+        EventsRequestBody body = new EventsRequestBody(gson, Collections.<String>emptyList(), events);
+
+        Buffer first = new Buffer();
+        body.writeTo(first);
+        Buffer second = new Buffer();
+        body.writeTo(second);
+
+        assertEquals(first.readUtf8(), second.readUtf8());
+    }
+}
@@ -0,0 +1,87 @@
+package com.launchdarkly.sdk.android;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.launchdarkly.sdk.LDUser;
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class FeatureEventDeduplicatorTest {
+
+    private final LDUser user = new LDUser.Builder("userKey").build();
+    private final LDUser otherUser = new LDUser.Builder("otherKey").build();
+
+    private FeatureRequestEvent event(LDUser user, String flagKey, int variation, int version) {
+        return new FeatureRequestEvent(flagKey, user, LDValue.of(variation == 1), LDValue.of(false),
+                version, variation, null, false, false);
+    }
+
+    @Test
+    public void identicalEventsAreCollapsedWithCount() {
+        FeatureEventDeduplicator deduplicator = new FeatureEventDeduplicator(10);
+        FeatureRequestEvent first = event(user, "flag", 1, 5);
+        assertNull(deduplicator.add(first));
+        for (int i = 0; i < 99; i++) {
+            assertNull(deduplicator.add(event(user, "flag", 1, 5)));
+        }
+
+        List<FeatureRequestEvent> drained = deduplicator.drain();
+        assertEquals(1, drained.size());
+        assertSame(first, drained.get(0));
+        assertEquals(Integer.valueOf(100), drained.get(0).count);
+        assertEquals(0, deduplicator.size());
+    }
+
+    @Test
+    public void differentUsersVariationsAndVersionsAreKeptApart() {
+        FeatureEventDeduplicator deduplicator = new FeatureEventDeduplicator(10);
+        deduplicator.add(event(user, "flag", 1, 5));
+        deduplicator.add(event(otherUser, "flag", 1, 5));
+        deduplicator.add(event(user, "flag", 0, 5));
+        deduplicator.add(event(user, "flag", 1, 6));
+        deduplicator.add(event(user, "other-flag", 1, 5));
+
+        List<FeatureRequestEvent> drained = deduplicator.drain();
+        assertEquals(5, drained.size());
+        for (FeatureRequestEvent event : drained) {
+            assertNull(event.count);
+        }
+    }
+
+    @Test
+    public void leastRecentlySeenEventIsEvictedAtCapacity() {
+        FeatureEventDeduplicator deduplicator = new FeatureEventDeduplicator(2);
+        FeatureRequestEvent a = event(user, "a", 1, 1);
+        deduplicator.add(a);
+        deduplicator.add(event(user, "b", 1, 1));
+        // Seeing "a" again makes "b" the least recently seen
+        deduplicator.add(event(user, "a", 1, 1));
+
+        FeatureRequestEvent evicted = deduplicator.add(event(user, "c", 1, 1));
+        assertEquals("b", evicted.key);
+        List<FeatureRequestEvent> drained = deduplicator.drain();
+        assertEquals(2, drained.size());
+        assertEquals(Integer.valueOf(2), a.count);
+    }
+
+    @Test
+    public void countIsOnlySerializedForCollapsedEvents() {
+        Gson gson = new Gson();
+        FeatureRequestEvent single = event(user, "flag", 1, 5);
+        assertFalse(gson.toJsonTree(single).getAsJsonObject().has("count"));
+
+        FeatureEventDeduplicator deduplicator = new FeatureEventDeduplicator(10);
+        deduplicator.add(single);
+        deduplicator.add(event(user, "flag", 1, 5));
+        JsonObject json = gson.toJsonTree(deduplicator.drain().get(0)).getAsJsonObject();
+        assertEquals(2, json.get("count").getAsInt());
+    }
+}
@@ -12,6 +12,7 @@ import com.launchdarkly.sdk.ObjectBuilder;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -328,4 +329,54 @@ public class FlagTest {
         assertEquals(flagHighVersion, flagHighVersion.updateFlag(flagLowVersion));
         assertEquals(flagHighVersion, flagLowVersion.updateFlag(flagHighVersion));
     }
+
+    @Test
+    public void fromJsonReadsScalarFields() throws IOException {
+        final String json = "{\"key\":\"flag\",\"value\":{\"a\":[1,2]},\"version\":3,\"flagVersion\":4," +
+                "\"variation\":1,\"trackEvents\":true,\"trackReason\":null,\"debugEventsUntilDate\":1500000000000," +
+                "\"reason\":{\"kind\":\"FALLTHROUGH\"},\"unknown\":[{}]}";
+        final Flag flag = Flag.fromJson(json, "other");
+        assertEquals("flag", flag.getKey());
+        assertEquals(3, flag.getVersion().intValue());
+        assertEquals(4, flag.getFlagVersion().intValue());
+        assertEquals(1, flag.getVariation().intValue());
+        assertTrue(flag.getTrackEvents());
+        assertFalse(flag.isTrackReason());
+        assertEquals(1500000000000L, flag.getDebugEventsUntilDate().longValue());
+        assertEquals(LDValue.buildObject().put("a", LDValue.buildArray().add(1).add(2).build()).build(), flag.getValue());
+        assertEquals(EvaluationReason.fallthrough(), flag.getReason());
+    }
+
+    @Test
+    public void fromJsonRetainsJson() throws IOException {
+        final String json = "{\"key\":\"flag\",\"value\":\"abc\",\"version\":3}";
+        final Flag flag = Flag.fromJson(json, "flag");
+        assertEquals(json, flag.toJson());
+        // The retained JSON is reused after the value has been decoded
+        assertEquals(LDValue.of("abc"), flag.getValue());
+        assertEquals(json, flag.toJson());
+    }
+
+    @Test
+    public void fromJsonUsesDefaultKey() throws IOException {
+        final Flag flag = Flag.fromJson("{\"value\":true}", "flag");
+        assertEquals("flag", flag.getKey());
+        assertEquals(LDValue.of(true), flag.getValue());
+        assertNull(flag.getVersion());
+        assertNull(flag.getReason());
+    }
+
+    @Test(expected = IOException.class)
+    public void fromJsonRejectsMalformedJson() throws IOException {
+        Flag.fromJson("[\"key\"]", "flag");
+    }
+
+    @Test
+    public void toJsonSerializesDecodedFlag() {
+        final Flag flag = new FlagBuilder("flag").value(LDValue.of(5)).version(2).build();
+        final Flag deserialized = gson.fromJson(flag.toJson(), Flag.class);
+        assertEquals("flag", deserialized.getKey());
+        assertEquals(LDValue.of(5), deserialized.getValue());
+        assertEquals(2, deserialized.getVersion().intValue());
+    }
 }
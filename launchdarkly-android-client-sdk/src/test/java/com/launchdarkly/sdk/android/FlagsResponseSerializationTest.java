@@ -0,0 +1,82 @@
+package com.launchdarkly.sdk.android;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlagsResponseSerializationTest {
+
+    private static final String RESPONSE_JSON = "{"
+            + "\"android-banner\":{\"value\":true,\"version\":3,\"variation\":1},"
+            + "\"android-theme\":{\"value\":\"dark\",\"version\":4},"
+            + "\"web-only\":{\"value\":{\"nested\":[1,2,3]},\"version\":5},"
+            + "\"shared\":{\"value\":7,\"version\":6}"
+            + "}";
+
+    private static Map<String, Flag> byKey(List<Flag> flags) {
+        Map<String, Flag> result = new HashMap<>();
+        for (Flag flag : flags) {
+            result.put(flag.getKey(), flag);
+        }
+        return result;
+    }
+
+    @Test
+    public void filterAcceptsEverythingByDefault() {
+        assertFalse(FlagFilter.ALL.isFiltering());
+        assertTrue(FlagFilter.ALL.accepts("anything"));
+    }
+
+    @Test
+    public void filterAcceptsAllowedKeysAndPrefixes() {
+        FlagFilter filter = new FlagFilter(Collections.singletonList("shared"), Collections.singletonList("android-"));
+        assertTrue(filter.isFiltering());
+        assertTrue(filter.accepts("shared"));
+        assertTrue(filter.accepts("android-banner"));
+        assertFalse(filter.accepts("web-only"));
+        assertFalse(filter.accepts("shared-2"));
+        assertFalse(filter.accepts(null));
+    }
+
+    @Test
+    public void parseStringWithoutFilterKeepsAllFlags() throws IOException {
+        Map<String, Flag> flags = byKey(FlagsResponseSerialization.parseFlags(RESPONSE_JSON, FlagFilter.ALL));
+        assertEquals(4, flags.size());
+        assertEquals(LDValue.of(7), flags.get("shared").getValue());
+    }
+
+    @Test
+    public void parseStringDropsFilteredFlags() throws IOException {
+        FlagFilter filter = new FlagFilter(Collections.singletonList("shared"), Collections.singletonList("android-"));
+        Map<String, Flag> flags = byKey(FlagsResponseSerialization.parseFlags(RESPONSE_JSON, filter));
+        assertEquals(3, flags.size());
+        assertFalse(flags.containsKey("web-only"));
+        assertEquals(LDValue.of(true), flags.get("android-banner").getValue());
+        assertEquals(1, flags.get("android-banner").getVariation(), 0);
+        assertEquals(LDValue.of("dark"), flags.get("android-theme").getValue());
+        assertEquals(6, flags.get("shared").getVersion(), 0);
+    }
+
+    @Test
+    public void parseJsonObjectDropsFilteredFlags() {
+        JsonObject json = JsonParser.parseString(RESPONSE_JSON).getAsJsonObject();
+        FlagFilter filter = new FlagFilter(Arrays.asList("web-only", "missing"), Collections.<String>emptyList());
+        List<Flag> flags = FlagsResponseSerialization.parseFlags(json, filter);
+        assertEquals(1, flags.size());
+        assertEquals("web-only", flags.get(0).getKey());
+        assertEquals(5, flags.get(0).getVersion(), 0);
+    }
+}
@@ -0,0 +1,37 @@
+package com.launchdarkly.sdk.android;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.GzipSource;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GzipRequestBodyTest {
+
+    private static final MediaType TEXT = MediaType.parse("text/plain");
+
+    @Test
+    public void compressesDelegateAndCountsBytes() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            content.append("{\"kind\":\"feature\",\"key\":\"repeated-flag-key\"},");
+        }
+        GzipRequestBody body = new GzipRequestBody(RequestBody.create(content.toString(), TEXT));
+
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+
+        assertEquals(TEXT, body.contentType());
+        assertEquals(content.length(), body.getRawBytes());
+        assertEquals(buffer.size(), body.getCompressedBytes());
+        assertTrue(body.getCompressedBytes() < body.getRawBytes() / 8);
+        assertEquals(content.toString(), Okio.buffer(new GzipSource(buffer)).readUtf8());
+    }
+}
@@ -0,0 +1,98 @@
+package com.launchdarkly.sdk.android;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.launchdarkly.sdk.LDUser;
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class MetricEventAggregatorTest {
+
+    private final LDUser user = new LDUser.Builder("userKey").build();
+    private final LDUser otherUser = new LDUser.Builder("otherKey").build();
+
+    private CustomEvent metric(LDUser user, String key, LDValue data, double value) {
+        return new CustomEvent(key, user, data, value, false);
+    }
+
+    @Test
+    public void metricsAreAggregatedWithTotals() {
+        MetricEventAggregator aggregator = new MetricEventAggregator(10);
+        CustomEvent first = metric(user, "frame_time", null, 16);
+        assertNull(aggregator.add(first));
+        assertNull(aggregator.add(metric(user, "frame_time", null, 12)));
+        assertNull(aggregator.add(metric(user, "frame_time", null, 33)));
+        assertNull(aggregator.add(metric(user, "frame_time", null, 19)));
+
+        List<CustomEvent> drained = aggregator.drain();
+        assertEquals(1, drained.size());
+        CustomEvent event = drained.get(0);
+        assertSame(first, event);
+        assertEquals(Integer.valueOf(4), event.count);
+        assertEquals(80, event.metricSum, 0);
+        assertEquals(12, event.metricMin, 0);
+        assertEquals(33, event.metricMax, 0);
+        assertEquals(20, event.metricValue, 0);
+        assertEquals(0, aggregator.size());
+    }
+
+    @Test
+    public void differentKeysUsersAndDataAreKeptApart() {
+        MetricEventAggregator aggregator = new MetricEventAggregator(10);
+        aggregator.add(metric(user, "frame_time", null, 1));
+        aggregator.add(metric(otherUser, "frame_time", null, 1));
+        aggregator.add(metric(user, "load_time", null, 1));
+        aggregator.add(metric(user, "frame_time", LDValue.of("level-1"), 1));
+        aggregator.add(metric(user, "frame_time", LDValue.of("level-2"), 1));
+
+        List<CustomEvent> drained = aggregator.drain();
+        assertEquals(5, drained.size());
+        for (CustomEvent event : drained) {
+            assertNull(event.count);
+            assertEquals(1, event.metricValue, 0);
+        }
+    }
+
+    @Test
+    public void leastRecentlyUpdatedAggregateIsEvictedAtCapacity() {
+        MetricEventAggregator aggregator = new MetricEventAggregator(2);
+        aggregator.add(metric(user, "a", null, 1));
+        aggregator.add(metric(user, "b", null, 2));
+        aggregator.add(metric(user, "b", null, 4));
+        // Updating "a" makes "b" the least recently updated
+        aggregator.add(metric(user, "a", null, 3));
+
+        CustomEvent evicted = aggregator.add(metric(user, "c", null, 1));
+        assertEquals("b", evicted.key);
+        assertEquals(Integer.valueOf(2), evicted.count);
+        assertEquals(6, evicted.metricSum, 0);
+        assertEquals(2, aggregator.drain().size());
+    }
+
+    @Test
+    public void totalsAreOnlySerializedForAggregatedEvents() {
+        Gson gson = new Gson();
+        CustomEvent single = metric(user, "frame_time", null, 16);
+        JsonObject singleJson = gson.toJsonTree(single).getAsJsonObject();
+        assertFalse(singleJson.has("count"));
+        assertFalse(singleJson.has("metricSum"));
+
+        MetricEventAggregator aggregator = new MetricEventAggregator(10);
+        aggregator.add(single);
+        aggregator.add(metric(user, "frame_time", null, 20));
+        JsonObject json = gson.toJsonTree(aggregator.drain().get(0)).getAsJsonObject();
+        assertEquals(2, json.get("count").getAsInt());
+        assertEquals(36, json.get("metricSum").getAsDouble(), 0);
+        assertEquals(16, json.get("metricMin").getAsDouble(), 0);
+        assertEquals(20, json.get("metricMax").getAsDouble(), 0);
+        assertEquals(18, json.get("metricValue").getAsDouble(), 0);
+    }
+}
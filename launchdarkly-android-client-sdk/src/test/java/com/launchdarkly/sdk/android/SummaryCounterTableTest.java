@@ -0,0 +1,108 @@
+package com.launchdarkly.sdk.android;
+
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SummaryCounterTableTest {
+
+    private static SummaryEventStore.FlagCounter counterFor(SummaryEventStore.FlagCounters flagCounters, Integer version, Integer variation) {
+        for (SummaryEventStore.FlagCounter counter : flagCounters.counters) {
+            if (counter.matches(version, variation)) {
+                return counter;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void countsByVersionAndVariation() {
+        SummaryCounterTable table = new SummaryCounterTable();
+        table.increment("flag", LDValue.of(true), LDValue.of(false), 1, 0);
+        table.increment("flag", LDValue.of(true), LDValue.of(false), 1, 0);
+        table.increment("flag", LDValue.of(false), LDValue.of(false), 1, 1);
+        table.increment("flag", LDValue.of(false), LDValue.of(false), 2, 1);
+
+        Map<String, SummaryEventStore.FlagCounters> features = table.toFeatures();
+        assertEquals(1, features.size());
+        SummaryEventStore.FlagCounters flagCounters = features.get("flag");
+        assertEquals(LDValue.of(false), flagCounters.defaultValue);
+        assertEquals(3, flagCounters.counters.size());
+        assertEquals(2, counterFor(flagCounters, 1, 0).count);
+        assertEquals(LDValue.of(true), counterFor(flagCounters, 1, 0).value);
+        assertEquals(1, counterFor(flagCounters, 1, 1).count);
+        assertEquals(1, counterFor(flagCounters, 2, 1).count);
+    }
+
+    @Test
+    public void unknownFlagsAreCountedTogether() {
+        SummaryCounterTable table = new SummaryCounterTable();
+        table.increment("missing", LDValue.of("default"), LDValue.of("default"), null, null);
+        table.increment("missing", LDValue.of("default"), LDValue.of("default"), null, 3);
+
+        SummaryEventStore.FlagCounters flagCounters = table.toFeatures().get("missing");
+        assertEquals(1, flagCounters.counters.size());
+        assertTrue(flagCounters.counters.get(0).isUnknown());
+        assertNull(flagCounters.counters.get(0).variation);
+        assertEquals(2, flagCounters.counters.get(0).count);
+    }
+
+    @Test
+    public void incrementExistingRequiresCountedFlag() {
+        SummaryCounterTable table = new SummaryCounterTable();
+        assertFalse(table.incrementExisting("flag", LDValue.of(1), 1, 0));
+        table.increment("flag", LDValue.of(1), LDValue.of(0), 1, 0);
+        assertTrue(table.incrementExisting("flag", LDValue.of(1), 1, 0));
+        assertEquals(2, table.toFeatures().get("flag").counters.get(0).count);
+
+        table.clear();
+        assertTrue(table.isEmpty());
+        assertFalse(table.incrementExisting("flag", LDValue.of(1), 1, 0));
+        assertTrue(table.toFeatures().isEmpty());
+    }
+
+    @Test
+    public void growsBeyondInitialCapacity() {
+        SummaryCounterTable table = new SummaryCounterTable();
+        for (int repeat = 0; repeat < 3; repeat++) {
+            for (int i = 0; i < 500; i++) {
+                table.increment("flag" + (i % 50), LDValue.of(i), LDValue.ofNull(), 1000 + i, i % 7);
+            }
+        }
+
+        Map<String, SummaryEventStore.FlagCounters> features = table.toFeatures();
+        assertEquals(50, table.flagCount());
+        assertEquals(50, features.size());
+        int total = 0;
+        for (SummaryEventStore.FlagCounters flagCounters : features.values()) {
+            for (SummaryEventStore.FlagCounter counter : flagCounters.counters) {
+                assertEquals(3, counter.count);
+                total += counter.count;
+            }
+        }
+        assertEquals(1500, total);
+    }
+
+    @Test
+    public void addCountersMergesCheckpointedCounters() {
+        SummaryEventStore.FlagCounters stored = new SummaryEventStore.FlagCounters(LDValue.of(0));
+        SummaryEventStore.FlagCounter storedCounter = new SummaryEventStore.FlagCounter(LDValue.of(5), 2, 1);
+        storedCounter.count = 4;
+        stored.counters.add(storedCounter);
+
+        SummaryCounterTable table = new SummaryCounterTable();
+        table.addCounters("flag", stored);
+        assertTrue(table.incrementExisting("flag", LDValue.of(5), 2, 1));
+
+        SummaryEventStore.FlagCounters flagCounters = table.toFeatures().get("flag");
+        assertEquals(LDValue.of(0), flagCounters.defaultValue);
+        assertEquals(5, counterFor(flagCounters, 2, 1).count);
+    }
+}